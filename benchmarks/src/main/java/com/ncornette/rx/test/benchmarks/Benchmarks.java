@@ -0,0 +1,37 @@
+package com.ncornette.rx.test.benchmarks;
+
+import com.ncornette.rx.test.RxTestSchedulers;
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import rx.functions.Func0;
+
+/**
+ * Shared fixtures for benchmarks, logging to a stream that discards everything.
+ */
+final class Benchmarks {
+
+    private static final PrintStream NULL_STREAM = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {/* NO-OP */}
+
+        @Override
+        public void write(byte[] b, int off, int len) {/* NO-OP */}
+    });
+
+    private Benchmarks() {
+    }
+
+    static Logger nullLogger(Logger.Level level) {
+        return new Logger(level, NULL_STREAM);
+    }
+
+    static RxTestSchedulers rxTestSchedulers(Logger logger, Func0<Integer> backgroundEventsCount) {
+        return RxTestSchedulers.builder()
+                .logger(logger)
+                .backgroundEventsCount(backgroundEventsCount)
+                .build();
+    }
+}
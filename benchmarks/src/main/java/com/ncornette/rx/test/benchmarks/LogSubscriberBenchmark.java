@@ -0,0 +1,70 @@
+package com.ncornette.rx.test.benchmarks;
+
+import com.ncornette.rx.test.LogSubscriber;
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+import com.ncornette.rx.test.service.SpamRXService.Spam;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import rx.Subscriber;
+
+/**
+ * Cost of {@link LogSubscriber} passing a list of spams through, at each logger level and format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogSubscriberBenchmark {
+
+    @Param({"ERROR", "INFO", "DEBUG", "VERBOSE"})
+    public Logger.Level level;
+
+    @Param({"1", "100", "10000"})
+    public int payloadSize;
+
+    @Param({"FULL", "SUMMARY"})
+    public String format;
+
+    private Subscriber<List<Spam>> logSubscriber;
+    private List<Spam> payload;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        payload = new ArrayList<>(payloadSize);
+        for (int i = 0; i < payloadSize; i++) {
+            payload.add(new Spam(String.valueOf(i)));
+        }
+        LogSubscriber.Format logFormat = "SUMMARY".equals(format)
+                ? LogSubscriber.Format.SUMMARY : LogSubscriber.Format.FULL;
+        logSubscriber = LogSubscriber.create(Benchmarks.nullLogger(level), new Subscriber<List<Spam>>() {
+            @Override public void onCompleted() {/* NO-OP */}
+            @Override public void onError(Throwable e) {/* NO-OP */}
+            @Override public void onNext(List<Spam> spams) {
+                blackhole.consume(spams);
+            }
+        }, logFormat);
+    }
+
+    @Benchmark
+    public void onNext() {
+        logSubscriber.onNext(payload);
+    }
+}
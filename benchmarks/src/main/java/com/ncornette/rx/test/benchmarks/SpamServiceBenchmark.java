@@ -0,0 +1,83 @@
+package com.ncornette.rx.test.benchmarks;
+
+import com.ncornette.rx.test.MockSpamService;
+import com.ncornette.rx.test.RxTestSchedulers;
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.functions.Func0;
+import rx.subjects.PublishSubject;
+
+/**
+ * {@link MockSpamService} pipelines run end to end through {@link RxTestSchedulers}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpamServiceBenchmark {
+
+    @Param({"ERROR", "VERBOSE"})
+    public Logger.Level level;
+
+    /**
+     * Pages after the third one are empty, and complete the search.
+     */
+    @Param({"1", "3", "4"})
+    public int pages;
+
+    @Param({"6", "120"})
+    public int pageSize;
+
+    private RxTestSchedulers rxTestSchedulers;
+    private MockSpamService spamService;
+
+    @Setup
+    public void setUp() {
+        rxTestSchedulers = Benchmarks.rxTestSchedulers(Benchmarks.nullLogger(level), new Func0<Integer>() {
+            @Override
+            public Integer call() {
+                return spamService.getRequestCount();
+            }
+        });
+        spamService = new MockSpamService(rxTestSchedulers);
+    }
+
+    @Benchmark
+    public int searchSpams() throws RxTestSchedulers.OnErrorEventsException {
+        PublishSubject<Integer> pagePublishSubject = PublishSubject.create();
+        spamService.searchSpams("eggs", pageSize, pagePublishSubject)
+                .subscribe(rxTestSchedulers.newTestSubscriber());
+        rxTestSchedulers.triggerBackgroundRequests();
+
+        int events = 0;
+        for (int page = 1; page <= pages; page++) {
+            pagePublishSubject.onNext(page);
+            rxTestSchedulers.triggerBackgroundRequests();
+            events += rxTestSchedulers.triggerForegroundEvents();
+        }
+        return events;
+    }
+
+    @Benchmark
+    public int latestSpams() throws RxTestSchedulers.OnErrorEventsException {
+        spamService.latestSpams(pageSize).subscribe(rxTestSchedulers.newTestSubscriber());
+        rxTestSchedulers.triggerBackgroundRequests();
+        return rxTestSchedulers.triggerForegroundEvents();
+    }
+}
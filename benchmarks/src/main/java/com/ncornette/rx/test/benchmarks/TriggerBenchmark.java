@@ -0,0 +1,80 @@
+package com.ncornette.rx.test.benchmarks;
+
+import com.ncornette.rx.test.RxTestSchedulers;
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Func0;
+
+/**
+ * Overhead of the trigger bookkeeping: one action per scheduler and per cycle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TriggerBenchmark {
+
+    @Param({"ERROR", "INFO", "DEBUG", "VERBOSE"})
+    public Logger.Level level;
+
+    private RxTestSchedulers rxTestSchedulers;
+    private Scheduler.Worker backgroundWorker;
+    private Scheduler.Worker foregroundWorker;
+    private int actionCount;
+    private Action0 action;
+
+    @Setup
+    public void setUp() {
+        rxTestSchedulers = Benchmarks.rxTestSchedulers(Benchmarks.nullLogger(level), new Func0<Integer>() {
+            @Override
+            public Integer call() {
+                return actionCount;
+            }
+        });
+        backgroundWorker = rxTestSchedulers.testBackgroundScheduler().createWorker();
+        foregroundWorker = rxTestSchedulers.testForegroundScheduler().createWorker();
+        action = new Action0() {
+            @Override
+            public void call() {
+                actionCount++;
+            }
+        };
+    }
+
+    @Benchmark
+    public int triggerCycle() throws RxTestSchedulers.OnErrorEventsException {
+        backgroundWorker.schedule(action);
+        foregroundWorker.schedule(action);
+        return rxTestSchedulers.triggerBackgroundRequests() + rxTestSchedulers.triggerForegroundEvents();
+    }
+
+    @Benchmark
+    public int triggerUntilIdle() throws RxTestSchedulers.OnErrorEventsException {
+        backgroundWorker.schedule(action);
+        foregroundWorker.schedule(action);
+        return rxTestSchedulers.triggerUntilIdle().requests();
+    }
+
+    @Benchmark
+    public long emptyTrigger() throws RxTestSchedulers.OnErrorEventsException {
+        return rxTestSchedulers.triggerBackgroundRequests();
+    }
+}
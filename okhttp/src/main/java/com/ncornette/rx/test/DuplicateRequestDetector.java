@@ -0,0 +1,211 @@
+package com.ncornette.rx.test;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import rx.functions.Func0;
+
+/**
+ * Interceptor reporting identical requests sent while the first one is still in flight, or within
+ * a window after it was answered: wasted network calls that a cache or a distinct operator should
+ * have saved.
+ * <p>
+ * Requests are identified by method, url and a hash of their body. Fingerprints answered before
+ * the window are dropped, at most once per window.
+ */
+public class DuplicateRequestDetector implements Interceptor {
+
+    private static final Func0<Long> WALL_CLOCK = new Func0<Long>() {
+        @Override
+        public Long call() {
+            return System.nanoTime();
+        }
+    };
+
+    private final long windowNanos;
+    private final Func0<Long> nowNanos;
+    private final ConcurrentHashMap<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final List<Duplicate> duplicates = new ArrayList<>();
+    private volatile long lastEvictionNanos;
+
+    public DuplicateRequestDetector(long window, TimeUnit unit) {
+        this(window, unit, WALL_CLOCK);
+    }
+
+    /**
+     * @param nowNanos clock measuring the window, like the virtual time of a test scheduler.
+     */
+    public DuplicateRequestDetector(long window, TimeUnit unit, Func0<Long> nowNanos) {
+        if (window < 0) throw new IllegalArgumentException("[window] expected not to be negative");
+        if (nowNanos == null) throw new IllegalArgumentException("[nowNanos] expected not to be null");
+        this.windowNanos = unit.toNanos(window);
+        this.nowNanos = nowNanos;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        evictExpired(nowNanos.call());
+        Fingerprint fingerprint = acquire(key(request));
+        try {
+            return chain.proceed(request);
+        } finally {
+            synchronized (fingerprint) {
+                fingerprint.inFlight--;
+                fingerprint.answered = true;
+                fingerprint.answeredNanos = nowNanos.call();
+            }
+        }
+    }
+
+    public List<Duplicate> duplicates() {
+        synchronized (duplicates) {
+            return new ArrayList<>(duplicates);
+        }
+    }
+
+    public void assertNoDuplicates() {
+        List<Duplicate> duplicates = duplicates();
+        if (duplicates.isEmpty()) return;
+        StringBuilder message = new StringBuilder()
+                .append(duplicates.size()).append(" duplicate request(s):");
+        for (Duplicate duplicate : duplicates) {
+            message.append("\n - ").append(duplicate);
+        }
+        throw new AssertionError(message.toString());
+    }
+
+    public void reset() {
+        fingerprints.clear();
+        synchronized (duplicates) {
+            duplicates.clear();
+        }
+    }
+
+    private void addDuplicate(Duplicate duplicate) {
+        synchronized (duplicates) {
+            duplicates.add(duplicate);
+        }
+    }
+
+    /**
+     * @return the fingerprint of the key, counted in flight once checked for duplicates.
+     */
+    private Fingerprint acquire(String key) {
+        while (true) {
+            Fingerprint fingerprint = fingerprint(key);
+            synchronized (fingerprint) {
+                // Evicted since looked up: a new fingerprint replaces it.
+                if (fingerprint.evicted) continue;
+                long sinceAnswer = nowNanos.call() - fingerprint.answeredNanos;
+                if (fingerprint.inFlight > 0) {
+                    addDuplicate(new Duplicate(key, true, 0));
+                } else if (fingerprint.answered && sinceAnswer <= windowNanos) {
+                    addDuplicate(new Duplicate(key, false, sinceAnswer));
+                }
+                fingerprint.inFlight++;
+                return fingerprint;
+            }
+        }
+    }
+
+    /**
+     * Drops fingerprints answered before the window, unless done less than a window ago.
+     */
+    private void evictExpired(long now) {
+        if (now - lastEvictionNanos <= windowNanos) return;
+        lastEvictionNanos = now;
+        for (Fingerprint fingerprint : fingerprints.values()) {
+            synchronized (fingerprint) {
+                if (fingerprint.inFlight == 0 && fingerprint.answered && now - fingerprint.answeredNanos > windowNanos) {
+                    fingerprint.evicted = true;
+                    fingerprints.remove(fingerprint.key, fingerprint);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return requests remembered, in flight or answered within the window.
+     */
+    int fingerprintCount() {
+        return fingerprints.size();
+    }
+
+    private Fingerprint fingerprint(String key) {
+        Fingerprint fingerprint = fingerprints.get(key);
+        if (fingerprint == null) {
+            Fingerprint created = new Fingerprint(key);
+            fingerprint = fingerprints.putIfAbsent(key, created);
+            if (fingerprint == null) fingerprint = created;
+        }
+        return fingerprint;
+    }
+
+    private static String key(Request request) throws IOException {
+        String key = request.method() + " " + request.url();
+        if (request.body() == null) return key;
+        Buffer body = new Buffer();
+        request.body().writeTo(body);
+        return key + " #" + body.readByteString().md5().hex();
+    }
+
+    private static final class Fingerprint {
+        private final String key;
+        private int inFlight;
+        private boolean answered;
+        private long answeredNanos;
+        private boolean evicted;
+
+        Fingerprint(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * A request identical to a previous one.
+     */
+    public static final class Duplicate {
+        private final String request;
+        private final boolean inFlight;
+        private final long sinceAnswerNanos;
+
+        Duplicate(String request, boolean inFlight, long sinceAnswerNanos) {
+            this.request = request;
+            this.inFlight = inFlight;
+            this.sinceAnswerNanos = sinceAnswerNanos;
+        }
+
+        /**
+         * @return method, url and body hash of the request.
+         */
+        public String request() {
+            return request;
+        }
+
+        /**
+         * @return true if the previous identical request was not answered yet.
+         */
+        public boolean inFlight() {
+            return inFlight;
+        }
+
+        public long sinceAnswer(TimeUnit unit) {
+            return unit.convert(sinceAnswerNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            if (inFlight) return request + " (while in flight)";
+            return MessageFormat.format("{0} ({1}ms after answer)", request, sinceAnswer(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.ncornette.rx.test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import rx.functions.Func1;
+
+/**
+ * {@link Dispatcher} answering each request with the fixture indexed by its method, path and query,
+ * whatever the order of requests.
+ * <p>
+ * Fixtures only name the query parameters they depend on: a fixture of {@code GET /?page=2} answers
+ * {@code GET /?query=eggs&page=2}. Requests without a fixture get a 404 response.
+ */
+public final class FixtureDispatcher extends Dispatcher {
+
+    private static final String BASE_URL = "http://localhost/";
+    private static final Comparator<Set<String>> MOST_SPECIFIC_FIRST = new Comparator<Set<String>>() {
+        @Override
+        public int compare(Set<String> left, Set<String> right) {
+            return right.size() - left.size();
+        }
+    };
+
+    private final Map<String, String> resourcesByRequest;
+    private final Map<String, List<Set<String>>> queryNamesByPath;
+    private final FixtureStore fixtureStore;
+
+    private FixtureDispatcher(Builder builder) {
+        resourcesByRequest = new HashMap<>(builder.resourcesByRequest);
+        queryNamesByPath = new HashMap<>();
+        for (Map.Entry<String, Set<Set<String>>> entry : builder.queryNamesByPath.entrySet()) {
+            List<Set<String>> queryNamesSets = new ArrayList<>(entry.getValue());
+            Collections.sort(queryNamesSets, MOST_SPECIFIC_FIRST);
+            queryNamesByPath.put(entry.getKey(), queryNamesSets);
+        }
+        fixtureStore = builder.fixtureStore;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        return dispatch(request.getMethod(), request.getPath());
+    }
+
+    /**
+     * @param path path and query of the request, like {@code /?limit=6&page=2}.
+     */
+    public MockResponse dispatch(String method, String path) {
+        String resourcePath = resourcePath(method, path);
+        if (resourcePath == null) {
+            return new MockResponse().setResponseCode(404).setBody("No fixture for " + method + " " + path);
+        }
+        try {
+            return new MockResponse().setBody(fixtureStore.get(resourcePath));
+        } catch (IOException e) {
+            return new MockResponse().setResponseCode(500).setBody(String.valueOf(e));
+        }
+    }
+
+    /**
+     * @return the fixture of the request, or null.
+     */
+    public String resourcePath(String method, String path) {
+        HttpUrl url = parse(path);
+        List<Set<String>> queryNamesSets = queryNamesByPath.get(method + " " + url.encodedPath());
+        if (queryNamesSets == null) return null;
+        for (Set<String> queryNames : queryNamesSets) {
+            String resourcePath = resourcesByRequest.get(key(method, url, queryNames));
+            if (resourcePath != null) return resourcePath;
+        }
+        return null;
+    }
+
+    public int size() {
+        return resourcesByRequest.size();
+    }
+
+    private static HttpUrl parse(String path) {
+        HttpUrl url = HttpUrl.parse(BASE_URL).resolve(path);
+        if (url == null) throw new IllegalArgumentException("[path] expected to be a valid url path: " + path);
+        return url;
+    }
+
+    /**
+     * @return method, path, and the named query parameters sorted by name.
+     */
+    private static String key(String method, HttpUrl url, Set<String> queryNames) {
+        StringBuilder key = new StringBuilder(method).append(' ').append(url.encodedPath());
+        char separator = '?';
+        for (String name : queryNames) {
+            List<String> values = url.queryParameterValues(name);
+            if (values.isEmpty()) return null;
+            for (String value : values) {
+                key.append(separator).append(name).append('=').append(value);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    public static final class Builder {
+        private final Map<String, String> resourcesByRequest = new HashMap<>();
+        private final Map<String, Set<Set<String>>> queryNamesByPath = new HashMap<>();
+        private FixtureStore fixtureStore;
+
+        private Builder() {
+        }
+
+        /**
+         * @param request method and path with query, like {@code GET /?limit=6&page=2}.
+         * @param resourcePath classpath resource answering the request.
+         */
+        public Builder fixture(String request, String resourcePath) {
+            if (request == null) throw new IllegalArgumentException("[request] expected not to be null");
+            if (resourcePath == null) throw new IllegalArgumentException("[resourcePath] expected not to be null");
+            int space = request.indexOf(' ');
+            if (space < 0) throw new IllegalArgumentException("[request] expected as \"METHOD /path?query\": " + request);
+            String method = request.substring(0, space);
+            HttpUrl url = parse(request.substring(space + 1));
+
+            Set<String> queryNames = Collections.unmodifiableSet(new TreeSet<>(url.queryParameterNames()));
+            String pathKey = method + " " + url.encodedPath();
+            Set<Set<String>> queryNamesSets = queryNamesByPath.get(pathKey);
+            if (queryNamesSets == null) {
+                queryNamesSets = new LinkedHashSet<>();
+                queryNamesByPath.put(pathKey, queryNamesSets);
+            }
+            queryNamesSets.add(queryNames);
+            resourcesByRequest.put(key(method, url, queryNames), resourcePath);
+            return this;
+        }
+
+        /**
+         * Indexes every file of a classpath directory.
+         *
+         * @param resourceDirectory like {@code /fixtures}.
+         * @param requestOfFileName request answered by a file, as in {@link #fixture(String, String)};
+         *                          files mapped to null are skipped.
+         */
+        public Builder directory(String resourceDirectory, Func1<String, String> requestOfFileName) throws IOException {
+            if (requestOfFileName == null) throw new IllegalArgumentException("[requestOfFileName] expected not to be null");
+            if (resourceDirectory == null || !resourceDirectory.startsWith("/")) {
+                throw new IllegalArgumentException("[resourceDirectory] expected to be an absolute path");
+            }
+            String directory = resourceDirectory.endsWith("/") ? resourceDirectory : resourceDirectory + "/";
+            for (String fileName : list(directory)) {
+                String request = requestOfFileName.call(fileName);
+                if (request != null) {
+                    fixture(request, directory + fileName);
+                }
+            }
+            return this;
+        }
+
+        public Builder fixtureStore(FixtureStore val) {
+            if (val == null) throw new IllegalArgumentException("[fixtureStore] expected not to be null");
+            fixtureStore = val;
+            return this;
+        }
+
+        public FixtureDispatcher build() {
+            if (fixtureStore == null) fixtureStore = FixtureStore.shared();
+            return new FixtureDispatcher(this);
+        }
+
+        /**
+         * @return names of the files in the directory, merged over all classpath entries.
+         */
+        private static Set<String> list(String directory) throws IOException {
+            String name = directory.substring(1);
+            Enumeration<URL> urls = FixtureDispatcher.class.getClassLoader().getResources(name);
+            if (!urls.hasMoreElements()) {
+                throw new FileNotFoundException("fixture directory [" + directory + "] not found");
+            }
+            Set<String> fileNames = new TreeSet<>();
+            while (urls.hasMoreElements()) {
+                list(urls.nextElement(), fileNames);
+            }
+            return fileNames;
+        }
+
+        private static void list(URL url, Set<String> fileNames) throws IOException {
+            if ("file".equals(url.getProtocol())) {
+                File[] files;
+                try {
+                    files = new File(url.toURI()).listFiles();
+                } catch (URISyntaxException e) {
+                    throw new IOException(e);
+                }
+                if (files != null) {
+                    for (File file : files) {
+                        if (file.isFile()) fileNames.add(file.getName());
+                    }
+                }
+            } else if ("jar".equals(url.getProtocol())) {
+                JarURLConnection connection = (JarURLConnection) url.openConnection();
+                String prefix = connection.getEntryName();
+                if (!prefix.endsWith("/")) prefix += "/";
+                JarFile jarFile = connection.getJarFile();
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(prefix) && name.indexOf('/', prefix.length()) < 0 && name.length() > prefix.length()) {
+                        fileNames.add(name.substring(prefix.length()));
+                    }
+                }
+            } else {
+                throw new IOException("can't list fixtures of " + url);
+            }
+        }
+    }
+}
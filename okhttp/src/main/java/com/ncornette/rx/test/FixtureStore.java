@@ -0,0 +1,176 @@
+package com.ncornette.rx.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okio.Buffer;
+
+/**
+ * Classpath resources loaded once and shared by every response using them.
+ * <p>
+ * {@link #get(String)} returns a clone of the cached {@link Buffer}, which shares its segments
+ * with the cache instead of copying bytes. Files above {@code mapThresholdBytes} are read through a
+ * memory mapping. Least recently used fixtures are evicted once the cache exceeds {@code maxBytes}.
+ */
+public final class FixtureStore {
+
+    public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+    public static final long DEFAULT_MAP_THRESHOLD_BYTES = 1024 * 1024;
+
+    private static FixtureStore shared;
+
+    private final long maxBytes;
+    private final long mapThresholdBytes;
+    private final LinkedHashMap<String, Buffer> fixtures = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+    private long loads;
+    private long hits;
+
+    public FixtureStore(long maxBytes, long mapThresholdBytes) {
+        if (maxBytes < 0) throw new IllegalArgumentException("[maxBytes] expected not to be negative");
+        if (mapThresholdBytes < 0) throw new IllegalArgumentException("[mapThresholdBytes] expected not to be negative");
+        this.maxBytes = maxBytes;
+        this.mapThresholdBytes = mapThresholdBytes;
+    }
+
+    /**
+     * @return the store of this JVM, shared by all tests.
+     */
+    public static synchronized FixtureStore shared() {
+        if (shared == null) {
+            shared = new FixtureStore(DEFAULT_MAX_BYTES, DEFAULT_MAP_THRESHOLD_BYTES);
+        }
+        return shared;
+    }
+
+    /**
+     * @param resourcePath classpath resource, like {@code /spam_results_6_page=1.json}.
+     * @return content of the resource, to be consumed by a single response.
+     */
+    public Buffer get(String resourcePath) throws IOException {
+        synchronized (fixtures) {
+            Buffer fixture = fixtures.get(resourcePath);
+            if (fixture != null) {
+                hits++;
+                return fixture.clone();
+            }
+        }
+
+        Buffer fixture = load(resourcePath);
+        synchronized (fixtures) {
+            loads++;
+            Buffer previous = fixtures.put(resourcePath, fixture);
+            if (previous != null) sizeBytes -= previous.size();
+            sizeBytes += fixture.size();
+            evict(fixture);
+            return fixture.clone();
+        }
+    }
+
+    public long sizeBytes() {
+        synchronized (fixtures) {
+            return sizeBytes;
+        }
+    }
+
+    /**
+     * @return number of resources read from the classpath, including reloads after eviction.
+     */
+    public long loads() {
+        synchronized (fixtures) {
+            return loads;
+        }
+    }
+
+    public long hits() {
+        synchronized (fixtures) {
+            return hits;
+        }
+    }
+
+    public void clear() {
+        synchronized (fixtures) {
+            fixtures.clear();
+            sizeBytes = 0;
+        }
+    }
+
+    /**
+     * Evicts least recently used fixtures, but never the one just loaded.
+     */
+    private void evict(Buffer loaded) {
+        Iterator<Buffer> iterator = fixtures.values().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            Buffer fixture = iterator.next();
+            if (fixture == loaded) continue;
+            sizeBytes -= fixture.size();
+            iterator.remove();
+        }
+    }
+
+    private Buffer load(String resourcePath) throws IOException {
+        URL url = FixtureStore.class.getResource(resourcePath);
+        if (url == null) throw new FileNotFoundException("fixture [" + resourcePath + "] not found");
+
+        File file = toFile(url);
+        if (file != null && file.length() > mapThresholdBytes) {
+            return map(file);
+        }
+        InputStream inputStream = url.openStream();
+        try {
+            return new Buffer().readFrom(inputStream);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) return null;
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static Buffer map(File file) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileChannel channel = inputStream.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Buffer buffer = new Buffer();
+            byte[] chunk = new byte[8192];
+            while (mapped.hasRemaining()) {
+                int count = Math.min(chunk.length, mapped.remaining());
+                mapped.get(chunk, 0, count);
+                buffer.write(chunk, 0, count);
+            }
+            return buffer;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @return fixtures by resource path, most recently used last.
+     */
+    Map<String, Long> sizes() {
+        synchronized (fixtures) {
+            Map<String, Long> sizes = new LinkedHashMap<>();
+            for (Map.Entry<String, Buffer> entry : fixtures.entrySet()) {
+                sizes.put(entry.getKey(), entry.getValue().size());
+            }
+            return sizes;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.ncornette.rx.test;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Fires concurrent requests through an {@link OkHttpClient}, typically {@link RxTestOkHttp#okHttpClient()}
+ * against its local {@link okhttp3.mockwebserver.MockWebServer}, and reports how the client held up.
+ * <p>
+ * Each of the {@code concurrency} threads sends requests one after the other until the duration
+ * elapses or the number of requests is reached. Requests are picked in turn from the weighted mix.
+ * The server must answer every request, with a {@link FixtureDispatcher} for instance.
+ */
+public final class LoadDriver {
+
+    private final OkHttpClient okHttpClient;
+    private final List<Request> mix;
+    private final int concurrency;
+    private final long durationNanos;
+    private final long maxRequests;
+
+    private LoadDriver(Builder builder) {
+        okHttpClient = builder.okHttpClient;
+        mix = new ArrayList<>(builder.mix);
+        concurrency = builder.concurrency;
+        durationNanos = builder.durationNanos;
+        maxRequests = builder.maxRequests;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Report run() throws InterruptedException {
+        final Report report = new Report(concurrency);
+        final OkHttpClient client = okHttpClient.newBuilder()
+                .addNetworkInterceptor(report.connectionInterceptor())
+                .build();
+        final AtomicLong issued = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(concurrency);
+        final long startTime = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            long index;
+                            while ((index = issued.getAndIncrement()) < maxRequests
+                                    && System.nanoTime() - startTime < durationNanos) {
+                                send(client, mix.get((int) (index % mix.size())), report);
+                            }
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                });
+            }
+            done.await();
+        } finally {
+            executor.shutdownNow();
+        }
+        report.elapsedNanos = System.nanoTime() - startTime;
+        return report;
+    }
+
+    private static void send(OkHttpClient client, Request request, Report report) {
+        long startTime = System.nanoTime();
+        try {
+            Response response = client.newCall(request).execute();
+            try {
+                response.body().source().skip(Long.MAX_VALUE);
+            } catch (IOException ignored) {
+                // Body is shorter than its announced length, the status is still recorded.
+            } finally {
+                response.body().close();
+            }
+            report.record(System.nanoTime() - startTime, response.code());
+        } catch (IOException e) {
+            report.recordFailure(System.nanoTime() - startTime, e);
+        }
+    }
+
+    /**
+     * Throughput, latency, errors and connection reuse of a run.
+     */
+    public static final class Report {
+
+        private final int concurrency;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final ConcurrentHashMap<Integer, AtomicLong> responsesByCode = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, AtomicLong> failuresByType = new ConcurrentHashMap<>();
+        private final Set<Connection> connections = Collections.newSetFromMap(new ConcurrentHashMap<Connection, Boolean>());
+        private final AtomicLong exchanges = new AtomicLong();
+        private volatile long elapsedNanos;
+
+        private Report(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        private Interceptor connectionInterceptor() {
+            return new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    exchanges.incrementAndGet();
+                    connections.add(chain.connection());
+                    return chain.proceed(chain.request());
+                }
+            };
+        }
+
+        private void record(long nanos, int code) {
+            latency.record(nanos);
+            requests.incrementAndGet();
+            increment(responsesByCode, code);
+        }
+
+        private void recordFailure(long nanos, IOException e) {
+            latency.record(nanos);
+            requests.incrementAndGet();
+            failures.incrementAndGet();
+            increment(failuresByType, e.getClass().getSimpleName());
+        }
+
+        private static <K> void increment(ConcurrentHashMap<K, AtomicLong> counts, K key) {
+            AtomicLong count = counts.get(key);
+            if (count == null) {
+                AtomicLong created = new AtomicLong();
+                count = counts.putIfAbsent(key, created);
+                if (count == null) count = created;
+            }
+            count.incrementAndGet();
+        }
+
+        public long requests() {
+            return requests.get();
+        }
+
+        /**
+         * @return requests that failed with an {@link IOException}, without a response.
+         */
+        public long failures() {
+            return failures.get();
+        }
+
+        /**
+         * @return responses with a status code of 400 or more.
+         */
+        public long errorResponses() {
+            long errors = 0;
+            for (Map.Entry<Integer, AtomicLong> entry : responsesByCode.entrySet()) {
+                if (entry.getKey() >= 400) errors += entry.getValue().get();
+            }
+            return errors;
+        }
+
+        public Map<Integer, Long> responsesByCode() {
+            Map<Integer, Long> snapshot = new TreeMap<>();
+            for (Map.Entry<Integer, AtomicLong> entry : responsesByCode.entrySet()) {
+                snapshot.put(entry.getKey(), entry.getValue().get());
+            }
+            return snapshot;
+        }
+
+        public Map<String, Long> failuresByType() {
+            Map<String, Long> snapshot = new TreeMap<>();
+            for (Map.Entry<String, AtomicLong> entry : failuresByType.entrySet()) {
+                snapshot.put(entry.getKey(), entry.getValue().get());
+            }
+            return snapshot;
+        }
+
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        public long elapsedTime(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public double throughputPerSecond() {
+            return elapsedNanos == 0 ? 0 : requests.get() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        /**
+         * @return distinct connections opened to the server.
+         */
+        public int connections() {
+            return connections.size();
+        }
+
+        /**
+         * @return share of the requests sent on an already opened connection.
+         */
+        public double connectionReuse() {
+            long count = exchanges.get();
+            return count == 0 ? 0 : (count - connections.size()) / (double) count;
+        }
+
+        @Override
+        public String toString() {
+            return MessageFormat.format("{0} requests in {1}ms with {2} threads: {3,number,0.0} req/s\n"
+                            + " latency    : {4}\n"
+                            + " responses  : {5}\n"
+                            + " failures   : {6} {7}\n"
+                            + " connections: {8} ({9,number,percent} reused)",
+                    requests(), elapsedTime(TimeUnit.MILLISECONDS), concurrency, throughputPerSecond(),
+                    latency, responsesByCode(), failures(), failuresByType(), connections(), connectionReuse());
+        }
+    }
+
+    public static final class Builder {
+        private OkHttpClient okHttpClient;
+        private final List<Request> mix = new ArrayList<>();
+        private int concurrency = 1;
+        private long durationNanos = Long.MAX_VALUE;
+        private long maxRequests = Long.MAX_VALUE;
+
+        private Builder() {
+        }
+
+        public Builder okHttpClient(OkHttpClient val) {
+            okHttpClient = val;
+            return this;
+        }
+
+        /**
+         * @param weight times the request is sent in each turn of the mix.
+         */
+        public Builder request(Request val, int weight) {
+            if (val == null) throw new IllegalArgumentException("[request] expected not to be null");
+            if (weight < 1) throw new IllegalArgumentException("[weight] expected to be positive");
+            for (int i = 0; i < weight; i++) {
+                mix.add(val);
+            }
+            return this;
+        }
+
+        public Builder request(Request val) {
+            return request(val, 1);
+        }
+
+        public Builder concurrency(int val) {
+            if (val < 1) throw new IllegalArgumentException("[concurrency] expected to be positive");
+            concurrency = val;
+            return this;
+        }
+
+        public Builder duration(long val, TimeUnit unit) {
+            if (val < 0) throw new IllegalArgumentException("[duration] expected not to be negative");
+            durationNanos = unit.toNanos(val);
+            return this;
+        }
+
+        public Builder requests(long val) {
+            if (val < 0) throw new IllegalArgumentException("[requests] expected not to be negative");
+            maxRequests = val;
+            return this;
+        }
+
+        public LoadDriver build() {
+            if (okHttpClient == null) throw new IllegalArgumentException("attribute [okHttpClient] expected not to be null.");
+            if (mix.isEmpty()) throw new IllegalArgumentException("attribute [request] expected at least once.");
+            if (durationNanos == Long.MAX_VALUE && maxRequests == Long.MAX_VALUE) {
+                throw new IllegalArgumentException("attribute [duration] or [requests] expected.");
+            }
+            return new LoadDriver(this);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.ncornette.rx.test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * One long-lived {@link MockWebServer} shared by many tests, each leasing an isolated endpoint.
+ * <p>
+ * A {@link Lease} owns the path prefix {@code /lease-N}, and answers requests under it from its own
+ * queue of responses. Leases are released on {@link Lease#close()}, or once garbage collected.
+ * <p>
+ * Connections are shared by leases, and accepted before the request tells which lease it is for, so
+ * a response enqueued with {@link SocketPolicy#DISCONNECT_AT_START} disconnects once its request is
+ * read, as with {@link SocketPolicy#DISCONNECT_AFTER_REQUEST}.
+ */
+public final class MockWebServerPool implements Closeable {
+
+    private static final String PREFIX = "/lease-";
+    private static MockWebServerPool shared;
+
+    private final MockWebServer server = new MockWebServer();
+    private final ConcurrentHashMap<String, LeaseReference> leases = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Lease> released = new ReferenceQueue<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public MockWebServerPool() {
+        server.setDispatcher(new LeaseDispatcher());
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the pool of this JVM, started on first use and shut down with the JVM.
+     */
+    public static synchronized MockWebServerPool shared() {
+        if (shared == null) {
+            final MockWebServerPool pool = new MockWebServerPool();
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    pool.close();
+                }
+            }, "MockWebServerPool-shutdown"));
+            shared = pool;
+        }
+        return shared;
+    }
+
+    public Lease lease() {
+        expungeReleased();
+        Lease lease = new Lease(PREFIX + nextId.incrementAndGet());
+        leases.put(lease.prefix, new LeaseReference(lease, released));
+        return lease;
+    }
+
+    public MockWebServer mockWebServer() {
+        return server;
+    }
+
+    /**
+     * @return number of leases not released yet.
+     */
+    public int leaseCount() {
+        expungeReleased();
+        return leases.size();
+    }
+
+    @Override
+    public void close() {
+        try {
+            server.shutdown();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void expungeReleased() {
+        Reference<? extends Lease> reference;
+        while ((reference = released.poll()) != null) {
+            leases.remove(((LeaseReference) reference).prefix, reference);
+        }
+    }
+
+    private static String prefixOf(String path) {
+        if (path == null || !path.startsWith(PREFIX)) return null;
+        int end = PREFIX.length();
+        while (end < path.length() && path.charAt(end) != '/' && path.charAt(end) != '?') {
+            end++;
+        }
+        return path.substring(0, end);
+    }
+
+    /**
+     * Endpoint of one test on the shared server.
+     */
+    public final class Lease implements Closeable {
+
+        private final String prefix;
+        private final Queue<MockResponse> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger requestCount = new AtomicInteger();
+        private volatile FixtureDispatcher fixtureDispatcher;
+
+        private Lease(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String prefix() {
+            return prefix;
+        }
+
+        /**
+         * @param path absolute path, resolved under the prefix of this lease.
+         */
+        public HttpUrl url(String path) {
+            return server.url(prefix + path);
+        }
+
+        public void enqueue(MockResponse response) {
+            responses.add(response);
+        }
+
+        public int requestCount() {
+            return requestCount.get();
+        }
+
+        /**
+         * @param val answers requests under the prefix, once enqueued responses are consumed.
+         */
+        public void fixtureDispatcher(FixtureDispatcher val) {
+            fixtureDispatcher = val;
+        }
+
+        /**
+         * @return an interceptor moving requests to the shared server under the prefix of this lease,
+         * so clients can keep absolute paths.
+         */
+        public Interceptor interceptor() {
+            return new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    Request request = chain.request();
+                    HttpUrl url = request.url();
+                    if (url.port() == server.getPort() && url.host().equals(server.getHostName())
+                            && prefixOf(url.encodedPath()) == null) {
+                        request = request.newBuilder()
+                                .url(url.newBuilder().encodedPath(prefix + url.encodedPath()).build())
+                                .build();
+                    }
+                    return chain.proceed(request);
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            leases.remove(prefix);
+        }
+    }
+
+    private static final class LeaseReference extends WeakReference<Lease> {
+
+        private final String prefix;
+
+        LeaseReference(Lease lease, ReferenceQueue<Lease> queue) {
+            super(lease, queue);
+            this.prefix = lease.prefix;
+        }
+    }
+
+    private final class LeaseDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String prefix = prefixOf(request.getPath());
+            LeaseReference reference = prefix == null ? null : leases.get(prefix);
+            Lease lease = reference == null ? null : reference.get();
+            if (lease == null) {
+                return new MockResponse().setResponseCode(404).setBody("No lease for " + request.getPath());
+            }
+            lease.requestCount.incrementAndGet();
+            MockResponse response = lease.responses.poll();
+            if (response == null && lease.fixtureDispatcher != null) {
+                return lease.fixtureDispatcher.dispatch(request.getMethod(), request.getPath().substring(prefix.length()));
+            }
+            if (response == null) {
+                return new MockResponse().setResponseCode(404).setBody("No response enqueued for " + request.getPath());
+            }
+            // MockWebServer reads DISCONNECT_AT_START from peek() only, when accepting the connection,
+            // before the path tells the lease: the default peek() keeps it open.
+            if (response.getSocketPolicy() == SocketPolicy.DISCONNECT_AT_START) {
+                return response.clone().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            }
+            return response;
+        }
+    }
+}
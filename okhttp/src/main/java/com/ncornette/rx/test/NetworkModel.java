@@ -0,0 +1,101 @@
+package com.ncornette.rx.test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency, jitter and bandwidth of a simulated network, see {@link RxTestOkHttp.Builder#network(NetworkModel)}.
+ * <p>
+ * Jitter is drawn uniformly between zero and its maximum, from a seeded random so runs are reproducible.
+ */
+public final class NetworkModel {
+
+    private static final long UNLIMITED = 0;
+
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final long bytesPerSecond;
+    private final Random random;
+
+    private NetworkModel(Builder builder) {
+        latencyNanos = builder.latencyNanos;
+        jitterNanos = builder.jitterNanos;
+        bytesPerSecond = builder.bytesPerSecond;
+        random = new Random(builder.seed);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a 3G network: 300ms latency, 100ms jitter, 750kbps.
+     */
+    public static NetworkModel regular3G() {
+        return builder()
+                .latency(300, TimeUnit.MILLISECONDS)
+                .jitter(100, TimeUnit.MILLISECONDS)
+                .bandwidth(750 * 1000 / 8)
+                .build();
+    }
+
+    /**
+     * @return time to send the request and receive the response.
+     */
+    public long delayNanos(long requestBytes, long responseBytes) {
+        long delay = latencyNanos;
+        if (jitterNanos > 0) {
+            synchronized (random) {
+                delay += (long) (random.nextDouble() * jitterNanos);
+            }
+        }
+        if (bytesPerSecond != UNLIMITED) {
+            long bytes = Math.max(0, requestBytes) + Math.max(0, responseBytes);
+            delay += bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+        }
+        return delay;
+    }
+
+    public static final class Builder {
+        private long latencyNanos;
+        private long jitterNanos;
+        private long bytesPerSecond = UNLIMITED;
+        private long seed;
+
+        private Builder() {
+        }
+
+        public Builder latency(long val, TimeUnit unit) {
+            if (val < 0) throw new IllegalArgumentException("[latency] expected not to be negative");
+            latencyNanos = unit.toNanos(val);
+            return this;
+        }
+
+        /**
+         * @param val maximum latency added to each request.
+         */
+        public Builder jitter(long val, TimeUnit unit) {
+            if (val < 0) throw new IllegalArgumentException("[jitter] expected not to be negative");
+            jitterNanos = unit.toNanos(val);
+            return this;
+        }
+
+        /**
+         * @param val bytes transferred per second, request and response included.
+         */
+        public Builder bandwidth(long val) {
+            if (val <= 0) throw new IllegalArgumentException("[bandwidth] expected to be positive");
+            bytesPerSecond = val;
+            return this;
+        }
+
+        public Builder seed(long val) {
+            seed = val;
+            return this;
+        }
+
+        public NetworkModel build() {
+            return new NetworkModel(this);
+        }
+    }
+}
@@ -1,41 +1,89 @@
 package com.ncornette.rx.test;
 
+import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
-import okio.Buffer;
+import okhttp3.mockwebserver.RecordedRequest;
 import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.TestScheduler;
 
 /**
  * Created by nic on 11/07/16.
  */
-public final class RxTestOkHttp {
+public final class RxTestOkHttp implements Closeable {
 
     private final OkHttpClient okHttpClient;
     private final CountRequestInterceptor countRequestInterceptor;
     private final MockWebServer mockWebServer;
     private final RxTestSchedulers rxTestSchedulers;
+    private final MockWebServerPool mockWebServerPool;
+    private final MockWebServerPool.Lease lease;
+    private final FixtureStore fixtureStore;
+    private final FixtureDispatcher fixtureDispatcher;
+    private final Queue<MockResponse> responses = new ConcurrentLinkedQueue<>();
+    private final NetworkInterceptor networkInterceptor;
+    private final DuplicateRequestDetector duplicateRequestDetector;
 
     public RxTestOkHttp() {
-        this(new Builder().build().newBuilder());
+        this(new Builder().withDefaults());
     }
 
     private RxTestOkHttp(Builder builder) {
-        mockWebServer = new MockWebServer();
         countRequestInterceptor = builder.countRequestInterceptor;
         rxTestSchedulers = builder.rxTestSchedulers;
         okHttpClient = builder.okHttpClient;
+        mockWebServerPool = builder.mockWebServerPool;
+        lease = builder.lease;
+        fixtureStore = builder.fixtureStore;
+        fixtureDispatcher = builder.fixtureDispatcher;
+        networkInterceptor = builder.networkInterceptor;
+        duplicateRequestDetector = builder.duplicateRequestDetector;
 
-        try {
-            mockWebServer.start();
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
+        if (mockWebServerPool != null) {
+            mockWebServer = mockWebServerPool.mockWebServer();
+            lease.fixtureDispatcher(fixtureDispatcher);
+        } else {
+            mockWebServer = new MockWebServer();
+            if (fixtureDispatcher != null) {
+                mockWebServer.setDispatcher(new Dispatcher() {
+                    @Override
+                    public MockResponse dispatch(RecordedRequest request) {
+                        MockResponse response = responses.poll();
+                        return response != null ? response : fixtureDispatcher.dispatch(request);
+                    }
+
+                    @Override
+                    public MockResponse peek() {
+                        MockResponse response = responses.peek();
+                        return response != null ? response : fixtureDispatcher.peek();
+                    }
+                });
+            }
+            try {
+                mockWebServer.start();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
         }
     }
 
@@ -53,17 +101,65 @@ public final class RxTestOkHttp {
         builder.countRequestInterceptor = copy.countRequestInterceptor;
         builder.okHttpClient = copy.okHttpClient;
         builder.rxTestSchedulers = copy.rxTestSchedulers;
+        builder.mockWebServerPool = copy.mockWebServerPool;
+        builder.lease = copy.lease;
+        builder.fixtureStore = copy.fixtureStore;
+        builder.fixtureDispatcher = copy.fixtureDispatcher;
+        builder.networkInterceptor = copy.networkInterceptor;
+        builder.duplicateRequestDetector = copy.duplicateRequestDetector;
         return builder;
     }
 
+    /**
+     * Enqueues the content of a classpath resource, read once through the {@link FixtureStore}.
+     */
     public void enqueueResponseFromFile(final String resourceFilePath) throws IOException {
-        InputStream resourceAsStream = resourceFilePath.getClass().getResourceAsStream(resourceFilePath);
-        mockWebServer.enqueue(new MockResponse().setBody(new Buffer().readFrom(resourceAsStream)));
-        resourceAsStream.close();
+        enqueue(new MockResponse().setBody(fixtureStore.get(resourceFilePath)));
     }
 
     public void enqueueResponse(String s) throws FileNotFoundException {
-        mockWebServer.enqueue(new MockResponse().setBody(s));
+        enqueue(new MockResponse().setBody(s));
+    }
+
+    /**
+     * Enqueues a response to the server, or to the lease of this instance on a shared server.
+     * With a {@link FixtureDispatcher}, enqueued responses are served first.
+     */
+    public void enqueue(MockResponse response) {
+        if (lease != null) {
+            lease.enqueue(response);
+        } else if (fixtureDispatcher != null) {
+            responses.add(response);
+        } else {
+            mockWebServer.enqueue(response);
+        }
+    }
+
+    /**
+     * @return url of the path on the mock server, under the lease prefix on a shared server.
+     */
+    public HttpUrl url(String path) {
+        return lease != null ? lease.url(path) : mockWebServer.url(path);
+    }
+
+    /**
+     * Releases the lease on a shared server, or shuts the server down, then fails if duplicate
+     * requests were detected.
+     */
+    @Override
+    public void close() {
+        if (lease != null) {
+            lease.close();
+        } else {
+            try {
+                mockWebServer.shutdown();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        if (duplicateRequestDetector != null) {
+            duplicateRequestDetector.assertNoDuplicates();
+        }
     }
 
     public OkHttpClient okHttpClient() {
@@ -78,21 +174,229 @@ public final class RxTestOkHttp {
         return countRequestInterceptor;
     }
 
+    /**
+     * @return the detector of duplicate requests, or null.
+     */
+    public DuplicateRequestDetector duplicateRequestDetector() {
+        return duplicateRequestDetector;
+    }
+
+    /**
+     * @return the interceptor simulating the network, or null.
+     */
+    public NetworkInterceptor networkInterceptor() {
+        return networkInterceptor;
+    }
+
+    /**
+     * @return the mock server, shared with other tests when built with a {@link MockWebServerPool}.
+     */
     public MockWebServer mockWebServer() {
         return mockWebServer;
     }
 
+    public MockWebServerPool.Lease lease() {
+        return lease;
+    }
+
+    /**
+     * Counts requests, in total and by endpoint, safely from any OkHttp dispatcher thread.
+     */
     public static class CountRequestInterceptor implements Interceptor {
-        private int requestCount;
+
+        /**
+         * Method and path, numeric segments replaced by {@code {id}}, like {@code GET /spams/{id}}.
+         */
+        public static final Func1<Request, String> PATH_TEMPLATE = new Func1<Request, String>() {
+            @Override
+            public String call(Request request) {
+                StringBuilder key = new StringBuilder(request.method()).append(' ');
+                for (String segment : request.url().encodedPathSegments()) {
+                    key.append('/').append(isNumeric(segment) ? "{id}" : segment);
+                }
+                return key.toString();
+            }
+        };
+
+        /**
+         * Method, path and query parameters sorted by name, like {@code GET /?limit=6&page=2}.
+         */
+        public static final Func1<Request, String> PATH_AND_QUERY = new Func1<Request, String>() {
+            @Override
+            public String call(Request request) {
+                HttpUrl url = request.url();
+                StringBuilder key = new StringBuilder(request.method()).append(' ').append(url.encodedPath());
+                char separator = '?';
+                for (String name : new TreeSet<>(url.queryParameterNames())) {
+                    for (String value : url.queryParameterValues(name)) {
+                        key.append(separator).append(name).append('=').append(value);
+                        separator = '&';
+                    }
+                }
+                return key.toString();
+            }
+        };
+
+        private final StripedCounter requestCount = new StripedCounter();
+        private final Func1<Request, String> endpointKey;
+        private final ConcurrentHashMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+        public CountRequestInterceptor() {
+            this(PATH_TEMPLATE);
+        }
+
+        /**
+         * @param endpointKey endpoint of a request, like {@link #PATH_TEMPLATE} or {@link #PATH_AND_QUERY}.
+         */
+        public CountRequestInterceptor(Func1<Request, String> endpointKey) {
+            if (endpointKey == null) throw new IllegalArgumentException("[endpointKey] expected not to be null");
+            this.endpointKey = endpointKey;
+        }
 
         @Override
         public Response intercept(Chain chain) throws IOException {
-            requestCount++;
-            return chain.proceed(chain.request());
+            requestCount.increment();
+            Request request = chain.request();
+            EndpointMetrics metrics = endpoint(endpointKey.call(request), true);
+            metrics.requests.incrementAndGet();
+            metrics.requestBytes.addAndGet(byteCount(request.headers(), request.body() != null ? request.body().contentLength() : 0));
+
+            long startTime = System.nanoTime();
+            Response response = chain.proceed(request);
+            metrics.latency.record(System.nanoTime() - startTime);
+            metrics.responseBytes.addAndGet(byteCount(response.headers(), response.body().contentLength()));
+            return response;
         }
 
         public int getRequestCount() {
-            return requestCount;
+            return (int) requestCount.get();
+        }
+
+        /**
+         * @return metrics of the endpoint, empty if it was never requested.
+         */
+        public EndpointMetrics endpoint(String key) {
+            EndpointMetrics metrics = endpoint(key, false);
+            return metrics != null ? metrics : new EndpointMetrics();
+        }
+
+        /**
+         * @return metrics of each requested endpoint, by key.
+         */
+        public Map<String, EndpointMetrics> endpoints() {
+            return new TreeMap<>(endpoints);
+        }
+
+        /**
+         * @return requests to the endpoint, to count events of a scheduler with
+         * {@link RxTestSchedulers.Builder#scheduler(String, rx.schedulers.TestScheduler, Func0)}.
+         */
+        public Func0<Integer> requestCount(final String key) {
+            return new Func0<Integer>() {
+                @Override
+                public Integer call() {
+                    return (int) endpoint(key).requests();
+                }
+            };
+        }
+
+        private EndpointMetrics endpoint(String key, boolean create) {
+            EndpointMetrics metrics = endpoints.get(key);
+            if (metrics == null && create) {
+                EndpointMetrics created = new EndpointMetrics();
+                metrics = endpoints.putIfAbsent(key, created);
+                if (metrics == null) metrics = created;
+            }
+            return metrics;
+        }
+
+        private static long byteCount(Headers headers, long bodyBytes) {
+            long bytes = Math.max(0, bodyBytes);
+            for (int i = 0; i < headers.size(); i++) {
+                bytes += headers.name(i).length() + headers.value(i).length() + 4;
+            }
+            return bytes;
+        }
+
+        private static boolean isNumeric(String segment) {
+            if (segment.isEmpty()) return false;
+            for (int i = 0; i < segment.length(); i++) {
+                if (!Character.isDigit(segment.charAt(i))) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Requests, bytes and latency of one endpoint. Bytes count the headers seen by the interceptor,
+     * and bodies of known length.
+     */
+    public static final class EndpointMetrics {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong requestBytes = new AtomicLong();
+        private final AtomicLong responseBytes = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        public long requests() {
+            return requests.get();
+        }
+
+        public long requestBytes() {
+            return requestBytes.get();
+        }
+
+        public long responseBytes() {
+            return responseBytes.get();
+        }
+
+        /**
+         * @return time from sending the request to receiving response headers.
+         */
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return MessageFormat.format("{0} requests, {1} bytes sent, {2} bytes received, {3}",
+                    requests(), requestBytes(), responseBytes(), latency);
+        }
+    }
+
+    /**
+     * Charges the modeled network delay of each request to the background virtual clock.
+     * <p>
+     * Requests are still answered right away: the clock moves once the requesting action has run,
+     * so timeouts and delays downstream don't see the network time. Concurrent requests overlap.
+     */
+    public static class NetworkInterceptor implements Interceptor {
+        private final NetworkModel network;
+        private final MeteredTestScheduler scheduler;
+        private final AtomicLong simulatedNanos = new AtomicLong();
+
+        public NetworkInterceptor(NetworkModel network, MeteredTestScheduler scheduler) {
+            if (network == null) throw new IllegalArgumentException("[network] expected not to be null");
+            if (scheduler == null) throw new IllegalArgumentException("[scheduler] expected not to be null");
+            this.network = network;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            Response response = chain.proceed(request);
+            long requestBytes = request.body() != null ? request.body().contentLength() : 0;
+            long delayNanos = network.delayNanos(requestBytes, response.body().contentLength());
+            simulatedNanos.addAndGet(delayNanos);
+            scheduler.charge(delayNanos, TimeUnit.NANOSECONDS);
+            return response;
+        }
+
+        /**
+         * @return network time simulated so far.
+         */
+        public long simulatedTime(TimeUnit unit) {
+            return unit.convert(simulatedNanos.get(), TimeUnit.NANOSECONDS);
         }
     }
 
@@ -100,6 +404,14 @@ public final class RxTestOkHttp {
         private CountRequestInterceptor countRequestInterceptor;
         private RxTestSchedulers rxTestSchedulers;
         private OkHttpClient okHttpClient;
+        private MockWebServerPool mockWebServerPool;
+        private MockWebServerPool.Lease lease;
+        private FixtureStore fixtureStore;
+        private FixtureDispatcher fixtureDispatcher;
+        private NetworkModel network;
+        private NetworkInterceptor networkInterceptor;
+        private Long duplicateWindowNanos;
+        private DuplicateRequestDetector duplicateRequestDetector;
 
         private Builder() {
         }
@@ -121,13 +433,66 @@ public final class RxTestOkHttp {
             return this;
         }
 
+        /**
+         * Leases an endpoint of a long-lived shared server instead of starting a server.
+         *
+         * @param val like {@link MockWebServerPool#shared()}.
+         */
+        public Builder mockWebServerPool(MockWebServerPool val) {
+            if (val == null) throw new IllegalArgumentException("[mockWebServerPool] expected not to be null");
+            mockWebServerPool = val;
+            lease = null;
+            return this;
+        }
+
+        /**
+         * @param val fixtures of {@link #enqueueResponseFromFile(String)}, {@link FixtureStore#shared()} by default.
+         */
+        public Builder fixtureStore(FixtureStore val) {
+            if (val == null) throw new IllegalArgumentException("[fixtureStore] expected not to be null");
+            fixtureStore = val;
+            return this;
+        }
+
+        /**
+         * @param val answers requests from fixtures by method, path and query, in any order.
+         */
+        public Builder fixtureDispatcher(FixtureDispatcher val) {
+            if (val == null) throw new IllegalArgumentException("[fixtureDispatcher] expected not to be null");
+            fixtureDispatcher = val;
+            return this;
+        }
+
+        /**
+         * Simulates the network in virtual time: each request charges its modeled delay to the
+         * background scheduler, instead of sleeping like MockWebServer throttling.
+         */
+        public Builder network(NetworkModel val) {
+            if (val == null) throw new IllegalArgumentException("[network] expected not to be null");
+            network = val;
+            networkInterceptor = null;
+            return this;
+        }
+
+        /**
+         * Reports identical requests sent while the first is in flight, or within the window of
+         * background virtual time after it was answered; {@link #close()} fails if there are any.
+         */
+        public Builder detectDuplicates(long window, TimeUnit unit) {
+            if (window < 0) throw new IllegalArgumentException("[window] expected not to be negative");
+            duplicateWindowNanos = unit.toNanos(window);
+            duplicateRequestDetector = null;
+            return this;
+        }
+
         public RxTestOkHttp build() {
+            return new RxTestOkHttp(withDefaults());
+        }
+
+        private Builder withDefaults() {
             if (countRequestInterceptor == null) countRequestInterceptor = new CountRequestInterceptor();
             if (okHttpClient == null) okHttpClient = new OkHttpClient();
-
-            okHttpClient = okHttpClient.newBuilder()
-                    .addInterceptor(countRequestInterceptor)
-                    .build();
+            if (fixtureStore == null) fixtureStore = FixtureStore.shared();
 
             rxTestSchedulers = RxTestSchedulers.newBuilder(rxTestSchedulers)
                     .backgroundEventsCount(new Func0<Integer>() {
@@ -137,7 +502,35 @@ public final class RxTestOkHttp {
                         }
                     })
                     .build();
-            return new RxTestOkHttp(this);
+
+            OkHttpClient.Builder okHttpClientBuilder = okHttpClient.newBuilder()
+                    .addInterceptor(countRequestInterceptor);
+            if (duplicateWindowNanos != null && duplicateRequestDetector == null) {
+                final TestScheduler backgroundScheduler = rxTestSchedulers.testBackgroundScheduler();
+                duplicateRequestDetector = new DuplicateRequestDetector(duplicateWindowNanos, TimeUnit.NANOSECONDS,
+                        new Func0<Long>() {
+                            @Override
+                            public Long call() {
+                                return TimeUnit.MILLISECONDS.toNanos(backgroundScheduler.now());
+                            }
+                        });
+                okHttpClientBuilder.addInterceptor(duplicateRequestDetector);
+            }
+            if (mockWebServerPool != null && lease == null) {
+                lease = mockWebServerPool.lease();
+                okHttpClientBuilder.addInterceptor(lease.interceptor());
+            }
+            if (network != null && networkInterceptor == null) {
+                if (!(rxTestSchedulers.testBackgroundScheduler() instanceof MeteredTestScheduler)) {
+                    throw new IllegalArgumentException("attribute [network] expects a background scheduler of type "
+                            + MeteredTestScheduler.class.getSimpleName());
+                }
+                networkInterceptor = new NetworkInterceptor(network,
+                        (MeteredTestScheduler) rxTestSchedulers.testBackgroundScheduler());
+                okHttpClientBuilder.addInterceptor(networkInterceptor);
+            }
+            okHttpClient = okHttpClientBuilder.build();
+            return this;
         }
     }
 }
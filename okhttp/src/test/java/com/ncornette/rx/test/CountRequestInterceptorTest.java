@@ -0,0 +1,62 @@
+package com.ncornette.rx.test;
+
+import com.ncornette.rx.test.RxTestOkHttp.CountRequestInterceptor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.Request;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CountRequestInterceptorTest {
+
+    private RxTestOkHttp rxTestOkHttp;
+
+    @Before
+    public void setUp() throws Exception {
+        rxTestOkHttp = RxTestOkHttp.builder()
+                .countRequestInterceptor(new CountRequestInterceptor(CountRequestInterceptor.PATH_AND_QUERY))
+                .fixtureDispatcher(FixtureDispatcher.builder()
+                        .fixture("GET /?page=1", "/spam_results_6_page=1.json")
+                        .fixture("GET /?page=2", "/spam_results_6_page=2.json")
+                        .build())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        rxTestOkHttp.close();
+    }
+
+    @Test
+    public void countsRequestsByEndpoint() throws Exception {
+        get("/?query=eggs&page=1");
+        get("/?query=eggs&page=2");
+        get("/?page=1&query=eggs");
+
+        CountRequestInterceptor interceptor = rxTestOkHttp.countRequestInterceptor();
+        assertThat(interceptor.getRequestCount()).isEqualTo(3);
+        assertThat(interceptor.endpoints()).containsOnlyKeys("GET /?page=1&query=eggs", "GET /?page=2&query=eggs");
+
+        RxTestOkHttp.EndpointMetrics page2 = interceptor.endpoint("GET /?page=2&query=eggs");
+        assertThat(page2.requests()).isEqualTo(1);
+        assertThat(page2.responseBytes()).isGreaterThanOrEqualTo(101).isLessThan(5 * 1024);
+        assertThat(page2.latency().count()).isEqualTo(1);
+        assertThat(interceptor.requestCount("GET /?page=1&query=eggs").call()).isEqualTo(2);
+        assertThat(interceptor.endpoint("GET /?page=3").requests()).isEqualTo(0);
+    }
+
+    @Test
+    public void pathTemplateReplacesIds() throws Exception {
+        Request request = new Request.Builder().url("http://localhost/spams/42/comments").build();
+
+        assertThat(CountRequestInterceptor.PATH_TEMPLATE.call(request)).isEqualTo("GET /spams/{id}/comments");
+    }
+
+    private void get(String path) throws Exception {
+        rxTestOkHttp.okHttpClient().newCall(new Request.Builder().url(rxTestOkHttp.url(path)).build())
+                .execute().body().close();
+    }
+}
@@ -0,0 +1,115 @@
+package com.ncornette.rx.test;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class DuplicateRequestDetectorTest {
+
+    @Test
+    public void detectsRepeatedRequestWithinWindow() throws Exception {
+        RxTestOkHttp rxTestOkHttp = RxTestOkHttp.builder()
+                .detectDuplicates(1, TimeUnit.SECONDS)
+                .build();
+        rxTestOkHttp.enqueueResponse("1");
+        rxTestOkHttp.enqueueResponse("2");
+        rxTestOkHttp.enqueueResponse("3");
+
+        get(rxTestOkHttp, "/?page=1");
+        rxTestOkHttp.testSchedulers().testBackgroundScheduler().advanceTimeBy(2, TimeUnit.SECONDS);
+        get(rxTestOkHttp, "/?page=1");
+        get(rxTestOkHttp, "/?page=1");
+
+        assertThat(rxTestOkHttp.duplicateRequestDetector().duplicates()).hasSize(1);
+        DuplicateRequestDetector.Duplicate duplicate = rxTestOkHttp.duplicateRequestDetector().duplicates().get(0);
+        assertThat(duplicate.inFlight()).isFalse();
+        assertThat(duplicate.request()).endsWith("/?page=1");
+        try {
+            rxTestOkHttp.close();
+            fail("duplicate expected");
+        } catch (AssertionError expected) {
+            assertThat(expected).hasMessageContaining("1 duplicate request(s)");
+        }
+    }
+
+    @Test
+    public void dropsFingerprintsAnsweredBeforeWindow() throws Exception {
+        RxTestOkHttp rxTestOkHttp = RxTestOkHttp.builder()
+                .detectDuplicates(1, TimeUnit.SECONDS)
+                .build();
+        for (int i = 0; i < 4; i++) {
+            rxTestOkHttp.enqueueResponse(String.valueOf(i));
+        }
+
+        get(rxTestOkHttp, "/?page=1");
+        get(rxTestOkHttp, "/?page=2");
+        get(rxTestOkHttp, "/?page=3");
+        assertThat(rxTestOkHttp.duplicateRequestDetector().fingerprintCount()).isEqualTo(3);
+        rxTestOkHttp.testSchedulers().testBackgroundScheduler().advanceTimeBy(2, TimeUnit.SECONDS);
+        get(rxTestOkHttp, "/?page=1");
+
+        assertThat(rxTestOkHttp.duplicateRequestDetector().fingerprintCount()).isEqualTo(1);
+        assertThat(rxTestOkHttp.duplicateRequestDetector().duplicates()).isEmpty();
+        rxTestOkHttp.close();
+    }
+
+    @Test
+    public void detectsConcurrentRequests() throws Exception {
+        final CountDownLatch bothReceived = new CountDownLatch(2);
+        final RxTestOkHttp rxTestOkHttp = RxTestOkHttp.builder()
+                .detectDuplicates(0, TimeUnit.SECONDS)
+                .build();
+        rxTestOkHttp.mockWebServer().setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                bothReceived.countDown();
+                bothReceived.await(5, TimeUnit.SECONDS);
+                return new MockResponse().setBody("spams");
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> first = executor.submit(new Get(rxTestOkHttp));
+        Future<?> second = executor.submit(new Get(rxTestOkHttp));
+        first.get();
+        second.get();
+        executor.shutdown();
+
+        assertThat(rxTestOkHttp.duplicateRequestDetector().duplicates()).hasSize(1);
+        assertThat(rxTestOkHttp.duplicateRequestDetector().duplicates().get(0).inFlight()).isTrue();
+        rxTestOkHttp.duplicateRequestDetector().reset();
+        rxTestOkHttp.close();
+    }
+
+    private static void get(RxTestOkHttp rxTestOkHttp, String path) throws Exception {
+        rxTestOkHttp.okHttpClient().newCall(new Request.Builder().url(rxTestOkHttp.url(path)).build())
+                .execute().body().close();
+    }
+
+    private static final class Get implements Callable<Void> {
+        private final RxTestOkHttp rxTestOkHttp;
+
+        Get(RxTestOkHttp rxTestOkHttp) {
+            this.rxTestOkHttp = rxTestOkHttp;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            get(rxTestOkHttp, "/spams");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.ncornette.rx.test;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.SocketPolicy;
+import rx.functions.Func1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class FixtureDispatcherTest {
+
+    private static final Pattern SPAM_RESULTS = Pattern.compile("spam_results_(\\d+)_page=(\\w+)\\.json");
+
+    private FixtureDispatcher fixtureDispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        fixtureDispatcher = FixtureDispatcher.builder()
+                .directory("/", new Func1<String, String>() {
+                    @Override
+                    public String call(String fileName) {
+                        Matcher matcher = SPAM_RESULTS.matcher(fileName);
+                        if (!matcher.matches()) return null;
+                        return "GET /?limit=" + matcher.group(1) + "&page=" + matcher.group(2);
+                    }
+                })
+                .fixture("GET /?count=6", "/spam_results_6_page=1.json")
+                .build();
+    }
+
+    @Test
+    public void indexesByPathAndQuery() throws Exception {
+        assertThat(fixtureDispatcher.size()).isEqualTo(7);
+        assertThat(fixtureDispatcher.resourcePath("GET", "/?query=eggs&page=2&limit=6"))
+                .isEqualTo("/spam_results_6_page=2.json");
+        assertThat(fixtureDispatcher.resourcePath("GET", "/?count=6")).isEqualTo("/spam_results_6_page=1.json");
+        assertThat(fixtureDispatcher.resourcePath("GET", "/?limit=6")).isNull();
+        assertThat(fixtureDispatcher.resourcePath("POST", "/?limit=6&page=2")).isNull();
+        assertThat(fixtureDispatcher.dispatch("GET", "/other").getStatus()).contains("404");
+    }
+
+    @Test
+    public void answersConcurrentRequestsInAnyOrder() throws Exception {
+        final RxTestOkHttp rxTestOkHttp = RxTestOkHttp.builder()
+                .fixtureDispatcher(fixtureDispatcher)
+                .build();
+        rxTestOkHttp.enqueueResponse("enqueued first");
+
+        String[] order = {"3", "1", "2", "3", "2", "1"};
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> pages = new ArrayList<>();
+        for (final String page : order) {
+            pages.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return get(rxTestOkHttp, "/?query=eggs&limit=6&page=" + page);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        int enqueued = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            String body = pages.get(i).get();
+            if (body.equals("enqueued first")) {
+                enqueued++;
+            } else {
+                assertThat(body).isEqualTo(FixtureStore.shared().get("/spam_results_6_page=" + order[i] + ".json").readUtf8());
+            }
+        }
+        assertThat(enqueued).isEqualTo(1);
+        assertThat(rxTestOkHttp.countRequestInterceptor().getRequestCount()).isEqualTo(6);
+        rxTestOkHttp.close();
+    }
+
+    @Test
+    public void appliesSocketPolicyOfEnqueuedResponses() throws Exception {
+        RxTestOkHttp rxTestOkHttp = RxTestOkHttp.builder()
+                .fixtureDispatcher(fixtureDispatcher)
+                .build();
+        rxTestOkHttp.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+
+        try {
+            get(rxTestOkHttp, "/?limit=6&page=1");
+            fail("Should disconnect");
+        } catch (IOException expected) {
+        }
+        assertThat(get(rxTestOkHttp, "/?limit=6&page=1"))
+                .isEqualTo(FixtureStore.shared().get("/spam_results_6_page=1.json").readUtf8());
+        rxTestOkHttp.close();
+    }
+
+    @Test
+    public void answersRequestsOfLease() throws Exception {
+        MockWebServerPool pool = new MockWebServerPool();
+        RxTestOkHttp rxTestOkHttp = RxTestOkHttp.builder()
+                .mockWebServerPool(pool)
+                .fixtureDispatcher(fixtureDispatcher)
+                .build();
+
+        assertThat(get(rxTestOkHttp, "/?limit=12&page=1"))
+                .isEqualTo(FixtureStore.shared().get("/spam_results_12_page=1.json").readUtf8());
+        pool.close();
+    }
+
+    private static String get(RxTestOkHttp rxTestOkHttp, String path) throws IOException {
+        OkHttpClient client = rxTestOkHttp.okHttpClient();
+        Response response = client.newCall(new Request.Builder().url(rxTestOkHttp.url(path)).build()).execute();
+        return response.body().string();
+    }
+}
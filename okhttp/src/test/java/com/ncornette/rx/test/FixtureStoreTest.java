@@ -0,0 +1,46 @@
+package com.ncornette.rx.test;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+
+import okio.Buffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FixtureStoreTest {
+
+    private static final String PAGE_1 = "/spam_results_6_page=1.json";
+    private static final String PAGE_2 = "/spam_results_6_page=2.json";
+
+    @Test
+    public void loadsEachFixtureOnce() throws Exception {
+        FixtureStore fixtureStore = new FixtureStore(FixtureStore.DEFAULT_MAX_BYTES, 0);
+
+        Buffer first = fixtureStore.get(PAGE_1);
+        String content = first.readUtf8();
+        Buffer second = fixtureStore.get(PAGE_1);
+
+        assertThat(second.readUtf8()).isEqualTo(content).isNotEmpty();
+        assertThat(fixtureStore.loads()).isEqualTo(1);
+        assertThat(fixtureStore.hits()).isEqualTo(1);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        FixtureStore unlimited = new FixtureStore(FixtureStore.DEFAULT_MAX_BYTES, FixtureStore.DEFAULT_MAP_THRESHOLD_BYTES);
+        long maxBytes = unlimited.get(PAGE_1).size() + unlimited.get(PAGE_2).size() - 1;
+        FixtureStore fixtureStore = new FixtureStore(maxBytes, FixtureStore.DEFAULT_MAP_THRESHOLD_BYTES);
+
+        fixtureStore.get(PAGE_1);
+        fixtureStore.get(PAGE_2);
+
+        assertThat(fixtureStore.sizes().keySet()).containsExactly(PAGE_2);
+        assertThat(fixtureStore.sizeBytes()).isLessThanOrEqualTo(maxBytes);
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingFixture() throws Exception {
+        new FixtureStore(FixtureStore.DEFAULT_MAX_BYTES, 0).get("/missing.json");
+    }
+}
@@ -0,0 +1,68 @@
+package com.ncornette.rx.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LoadDriverTest {
+
+    private RxTestOkHttp rxTestOkHttp;
+
+    @Before
+    public void setUp() throws Exception {
+        rxTestOkHttp = RxTestOkHttp.builder()
+                .fixtureDispatcher(FixtureDispatcher.builder()
+                        .fixture("GET /?page=1", "/spam_results_6_page=1.json")
+                        .fixture("GET /?page=2", "/spam_results_6_page=2.json")
+                        .build())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        rxTestOkHttp.close();
+    }
+
+    @Test
+    public void reportsRequestsErrorsAndReuse() throws Exception {
+        LoadDriver.Report report = LoadDriver.builder()
+                .okHttpClient(rxTestOkHttp.okHttpClient())
+                .concurrency(4)
+                .requests(200)
+                .request(new Request.Builder().url(rxTestOkHttp.url("/?page=1")).build(), 3)
+                .request(new Request.Builder().url(rxTestOkHttp.url("/?page=2")).build())
+                .request(new Request.Builder().url(rxTestOkHttp.url("/missing")).build())
+                .build()
+                .run();
+
+        assertThat(report.requests()).isEqualTo(200);
+        assertThat(report.failures()).isEqualTo(0);
+        assertThat(report.responsesByCode()).containsEntry(200, 160L).containsEntry(404, 40L);
+        assertThat(report.errorResponses()).isEqualTo(40);
+        assertThat(report.latency().count()).isEqualTo(200);
+        assertThat(report.connections()).isBetween(1, 4);
+        assertThat(report.connectionReuse()).isGreaterThan(0.9);
+        assertThat(report.throughputPerSecond()).isGreaterThan(0);
+        assertThat(rxTestOkHttp.countRequestInterceptor().getRequestCount()).isEqualTo(200);
+    }
+
+    @Test
+    public void runsForDuration() throws Exception {
+        LoadDriver.Report report = LoadDriver.builder()
+                .okHttpClient(rxTestOkHttp.okHttpClient())
+                .concurrency(2)
+                .duration(200, TimeUnit.MILLISECONDS)
+                .request(new Request.Builder().url(rxTestOkHttp.url("/?page=1")).build())
+                .build()
+                .run();
+
+        assertThat(report.requests()).isGreaterThan(0);
+        assertThat(report.elapsedTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(200);
+    }
+}
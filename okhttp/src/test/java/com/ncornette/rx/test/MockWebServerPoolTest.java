@@ -0,0 +1,54 @@
+package com.ncornette.rx.test;
+
+import org.junit.After;
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MockWebServerPoolTest {
+
+    private final MockWebServerPool pool = new MockWebServerPool();
+
+    @After
+    public void tearDown() throws Exception {
+        pool.close();
+    }
+
+    @Test
+    public void leasesAreIsolated() throws Exception {
+        RxTestOkHttp first = RxTestOkHttp.builder().mockWebServerPool(pool).build();
+        RxTestOkHttp second = RxTestOkHttp.builder().mockWebServerPool(pool).build();
+        first.enqueueResponse("first");
+        second.enqueueResponse("second");
+
+        assertThat(get(second.okHttpClient(), pool.mockWebServer().url("/spams").toString())).isEqualTo("second");
+        assertThat(get(first.okHttpClient(), first.url("/spams").toString())).isEqualTo("first");
+        assertThat(first.mockWebServer()).isSameAs(second.mockWebServer());
+        assertThat(first.countRequestInterceptor().getRequestCount()).isEqualTo(1);
+        assertThat(second.lease().requestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void closeReleasesLease() throws Exception {
+        RxTestOkHttp rxTestOkHttp = RxTestOkHttp.builder().mockWebServerPool(pool).build();
+        rxTestOkHttp.enqueue(new MockResponse().setBody("released"));
+        assertThat(pool.leaseCount()).isEqualTo(1);
+
+        rxTestOkHttp.close();
+
+        assertThat(pool.leaseCount()).isEqualTo(0);
+        Response response = new OkHttpClient().newCall(new Request.Builder()
+                .url(rxTestOkHttp.url("/")).build()).execute();
+        assertThat(response.code()).isEqualTo(404);
+        response.body().close();
+    }
+
+    private static String get(OkHttpClient client, String url) throws Exception {
+        return client.newCall(new Request.Builder().url(url).build()).execute().body().string();
+    }
+}
@@ -0,0 +1,70 @@
+package com.ncornette.rx.test;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import rx.Observable;
+import rx.functions.Func1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NetworkModelTest {
+
+    @Test
+    public void delayIncludesLatencyAndTransfer() throws Exception {
+        NetworkModel network = NetworkModel.builder()
+                .latency(100, TimeUnit.MILLISECONDS)
+                .bandwidth(1000)
+                .build();
+
+        assertThat(network.delayNanos(500, 1500)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(2100));
+    }
+
+    @Test
+    public void jitterIsBoundedAndReproducible() throws Exception {
+        NetworkModel.Builder builder = NetworkModel.builder().jitter(10, TimeUnit.MILLISECONDS).seed(42);
+        NetworkModel first = builder.build();
+        NetworkModel second = builder.build();
+
+        for (int i = 0; i < 100; i++) {
+            long delay = first.delayNanos(0, 0);
+            assertThat(delay).isBetween(0L, TimeUnit.MILLISECONDS.toNanos(10));
+            assertThat(second.delayNanos(0, 0)).isEqualTo(delay);
+        }
+    }
+
+    @Test
+    public void requestsTakeVirtualTime() throws Exception {
+        final RxTestOkHttp rxTestOkHttp = RxTestOkHttp.builder()
+                .network(NetworkModel.builder().latency(2, TimeUnit.SECONDS).build())
+                .build();
+        rxTestOkHttp.enqueueResponse("slow");
+        RxTestSchedulers rxTestSchedulers = rxTestOkHttp.testSchedulers();
+
+        Observable.just(rxTestOkHttp.url("/"))
+                .map(new Func1<Object, String>() {
+                    @Override
+                    public String call(Object url) {
+                        try {
+                            return rxTestOkHttp.okHttpClient()
+                                    .newCall(new Request.Builder().url(url.toString()).build())
+                                    .execute().body().string();
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                })
+                .subscribeOn(rxTestSchedulers.testBackgroundScheduler())
+                .subscribe(rxTestSchedulers.newTestSubscriber());
+
+        long startTime = System.nanoTime();
+        assertThat(rxTestSchedulers.triggerBackgroundRequests()).isEqualTo(1);
+
+        assertThat(System.nanoTime() - startTime).isLessThan(TimeUnit.SECONDS.toNanos(1));
+        assertThat(rxTestSchedulers.testBackgroundScheduler().now()).isGreaterThanOrEqualTo(2000);
+        assertThat(rxTestOkHttp.networkInterceptor().simulatedTime(TimeUnit.SECONDS)).isEqualTo(2);
+        rxTestOkHttp.close();
+    }
+}
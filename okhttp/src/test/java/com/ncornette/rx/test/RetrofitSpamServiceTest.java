@@ -3,9 +3,12 @@ package com.ncornette.rx.test;
 import com.ncornette.rx.test.RxTestSchedulers.Logger;
 import com.ncornette.rx.test.service.SpamRXService;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import okhttp3.OkHttpClient;
@@ -17,6 +20,8 @@ import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 /*
  * This Java source file was auto generated by running 'gradle init --type java-library'
  * by 'nic' at '7/11/16 2:14 PM' with Gradle 2.13
@@ -33,11 +38,15 @@ public class RetrofitSpamServiceTest extends SpamServiceAssertions {
     public void setUp() throws Exception {
 
         // testing schedulers
-        rxTestOkhttp = new RxTestOkHttp();
+        rxTestOkhttp = RxTestOkHttp.builder()
+                .mockWebServerPool(MockWebServerPool.shared())
+                .detectDuplicates(1, TimeUnit.MINUTES)
+                .build();
 
         java.util.logging.Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.OFF);
         rxTestSchedulers = rxTestOkhttp.testSchedulers().newBuilder()
                 .logger(Logger.verbose())
+                .leakDetector(new LeakDetector())
                 .build();
 
         HttpLoggingInterceptor loggingInterceptor = new HttpLoggingInterceptor();
@@ -48,22 +57,24 @@ public class RetrofitSpamServiceTest extends SpamServiceAssertions {
 
         Retrofit retrofit = new Retrofit.Builder()
                 .client(okHttpClient)
-                .baseUrl(rxTestOkhttp.mockWebServer().url("/"))
+                .baseUrl(rxTestOkhttp.url("/"))
                 .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
                 .addConverterFactory(GsonConverterFactory.create())
                 .build();
 
         RetrofitSpamService retrofitService = retrofit.create(RetrofitSpamService.class);
 
-        spamService = new RetrofitSpamServiceWrapper(
-                rxTestSchedulers.testBackgroundScheduler(),
-                rxTestSchedulers.testForegroundScheduler(),
-                retrofitService
-        );
+        spamService = new RetrofitSpamServiceWrapper(rxTestSchedulers, retrofitService);
 
         super.setUp();
     }
 
+    @After
+    public void tearDown() throws Exception {
+        rxTestOkhttp.close();
+        rxTestSchedulers.close();
+    }
+
     @Override
     protected RxTestSchedulers rxTestSchedulers() {
         return rxTestSchedulers;
@@ -105,6 +116,17 @@ public class RetrofitSpamServiceTest extends SpamServiceAssertions {
         super.assertLoad3Pages();
     }
 
+    @Test
+    @Override
+    public void assertLoadPagesUntilIdle() throws Exception {
+        rxTestOkhttp.enqueueResponseFromFile("/spam_results_6_page=1.json");
+        rxTestOkhttp.enqueueResponseFromFile("/spam_results_6_page=2.json");
+        rxTestOkhttp.enqueueResponseFromFile("/spam_results_6_page=3.json");
+        rxTestOkhttp.enqueueResponseFromFile("/spam_results_6_page=EMPTY.json");
+
+        super.assertLoadPagesUntilIdle();
+    }
+
     @Test
     @Override
     public void assertCompletesAtFirstEmptyList() throws Exception {
@@ -141,16 +163,18 @@ public class RetrofitSpamServiceTest extends SpamServiceAssertions {
     @Test
     @Override
     public void checkBackgroundError() throws Exception {
-        rxTestOkhttp.mockWebServer().enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        rxTestOkhttp.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
 
         super.checkBackgroundError();
+        assertThat(rxTestSchedulers.testSubscriber().getOnErrorEvents().get(0)).isExactlyInstanceOf(IOException.class);
     }
 
     @Test
     @Override
     public void checkHandleUnexpectError() throws Exception {
-        rxTestOkhttp.mockWebServer().enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        rxTestOkhttp.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
 
         super.checkHandleUnexpectError();
+        assertThat(rxTestSchedulers.testSubscriber().getOnErrorEvents().get(0)).isExactlyInstanceOf(IOException.class);
     }
 }
@@ -14,15 +14,14 @@ import rx.subjects.PublishSubject;
  */
 public class RetrofitSpamServiceWrapper implements SpamRXService {
 
+    private final RxTestSchedulers rxTestSchedulers;
     private final TestScheduler backgroundTestScheduler;
-    private final TestScheduler foregroundTestScheduler;
     private RetrofitSpamService retrofitService;
 
-    public RetrofitSpamServiceWrapper(TestScheduler backgroundTestScheduler,
-                                      TestScheduler foregroundTestScheduler,
+    public RetrofitSpamServiceWrapper(RxTestSchedulers rxTestSchedulers,
                                       RetrofitSpamService retrofitService) {
-        this.backgroundTestScheduler = backgroundTestScheduler;
-        this.foregroundTestScheduler = foregroundTestScheduler;
+        this.rxTestSchedulers = rxTestSchedulers;
+        this.backgroundTestScheduler = rxTestSchedulers.testBackgroundScheduler();
 
         this.retrofitService = retrofitService;
     }
@@ -31,7 +30,7 @@ public class RetrofitSpamServiceWrapper implements SpamRXService {
     public Observable<List<Spam>> searchSpams(final String query, final int limit, PublishSubject<Integer> pagePublishSubject) {
         return pagePublishSubject
                 .distinctUntilChanged()
-                .cache()
+                .compose(rxTestSchedulers.<Integer>cache("pages"))
                 .concatMap(new Func1<Integer, Observable<? extends List<Spam>>>() {
 
                     @Override
@@ -45,16 +44,16 @@ public class RetrofitSpamServiceWrapper implements SpamRXService {
                         return !spams.isEmpty();
                     }
                 })
-                .cache()
+                .compose(rxTestSchedulers.<List<Spam>>cache("spams"))
                 .subscribeOn(backgroundTestScheduler)
-                .observeOn(foregroundTestScheduler);
+                .compose(rxTestSchedulers.<List<Spam>>observeOnForeground());
     }
 
     @Override
     public Observable<List<Spam>> latestSpams(int count) {
         return retrofitService.latestSpams(count)
                 .subscribeOn(backgroundTestScheduler)
-                .observeOn(foregroundTestScheduler);
+                .compose(rxTestSchedulers.<List<Spam>>observeOnForeground());
     }
 
 }
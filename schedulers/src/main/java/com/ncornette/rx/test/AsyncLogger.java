@@ -0,0 +1,201 @@
+package com.ncornette.rx.test;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * {@link RxTestSchedulers.Logger} handing formatted lines to a background writer thread.
+ * <p>
+ * Lines go through a ring buffer allocated once; logging blocks only while the buffer is full,
+ * so no line is dropped. Call {@link #flush()} to wait for pending lines, it is called before
+ * failing a trigger and when the JVM shuts down.
+ * <p>
+ * All loggers share one daemon writer thread and one shutdown hook, so a logger left open holds
+ * no thread: it only needs {@link #close()} to print its later lines directly.
+ */
+public class AsyncLogger extends RxTestSchedulers.Logger implements Closeable {
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    // Loggers with lines to print, in the order they logged. Locked after a logger's lines.
+    private static final Deque<AsyncLogger> PENDING = new ArrayDeque<>();
+    private static boolean draining;
+    private static volatile Thread writer;
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final String[] lines;
+    private final boolean[] errors;
+    // Used by the writer thread only.
+    private final String[] batch;
+    private final boolean[] batchErrors;
+
+    private int head;
+    private int size;
+    private long logged;
+    private long written;
+    private boolean queued;
+    private boolean closed;
+
+    public AsyncLogger(Level level, PrintStream out, int capacity) {
+        this(level, out, System.err, capacity);
+    }
+
+    public AsyncLogger(Level level, PrintStream out, PrintStream err, int capacity) {
+        super(level, out);
+        if (out == null) throw new IllegalArgumentException("[out] expected not to be null");
+        if (err == null) throw new IllegalArgumentException("[err] expected not to be null");
+        if (capacity < 1) throw new IllegalArgumentException("[capacity] expected to be positive");
+        this.out = out;
+        this.err = err;
+        this.lines = new String[capacity];
+        this.errors = new boolean[capacity];
+        this.batch = new String[capacity];
+        this.batchErrors = new boolean[capacity];
+        startWriter();
+    }
+
+    private static void startWriter() {
+        synchronized (PENDING) {
+            if (writer != null) return;
+            writer = new Thread(new Writer(), "AsyncLogger");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    flushAll();
+                }
+            }, "AsyncLogger-flush"));
+        }
+    }
+
+    /**
+     * Queues the line, or prints it right away once the logger is closed.
+     */
+    @Override
+    protected void write(Level level, String line) {
+        synchronized (lines) {
+            if (closed) {
+                (level == Level.ERROR ? err : out).println(line);
+                return;
+            }
+            while (size == lines.length) {
+                await(lines);
+            }
+            int tail = (head + size) % lines.length;
+            lines[tail] = line;
+            errors[tail] = level == Level.ERROR;
+            size++;
+            logged++;
+            if (!queued) {
+                queued = true;
+                synchronized (PENDING) {
+                    PENDING.add(this);
+                    PENDING.notifyAll();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        synchronized (lines) {
+            if (Thread.currentThread() != writer) {
+                while (written < logged && writer.isAlive()) {
+                    await(lines);
+                }
+            }
+        }
+        super.flush();
+    }
+
+    /**
+     * Prints pending lines, then prints later lines directly.
+     */
+    @Override
+    public void close() {
+        flush();
+        synchronized (lines) {
+            closed = true;
+        }
+    }
+
+    /**
+     * Waits until the writer printed the lines of every logger.
+     */
+    private static void flushAll() {
+        synchronized (PENDING) {
+            while ((!PENDING.isEmpty() || draining) && writer.isAlive()) {
+                await(PENDING);
+            }
+        }
+    }
+
+    private static void await(Object lock) {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies the pending lines in a batch.
+     *
+     * @return lines in the batch.
+     */
+    private int takeBatch() {
+        synchronized (lines) {
+            int count = size;
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % lines.length;
+                batch[i] = lines[index];
+                batchErrors[i] = errors[index];
+                lines[index] = null;
+            }
+            head = (head + count) % lines.length;
+            size = 0;
+            queued = false;
+            lines.notifyAll();
+            return count;
+        }
+    }
+
+    private void printBatch(int count) {
+        for (int i = 0; i < count; i++) {
+            (batchErrors[i] ? err : out).println(batch[i]);
+            batch[i] = null;
+        }
+        synchronized (lines) {
+            written += count;
+            lines.notifyAll();
+        }
+    }
+
+    /**
+     * Drains pending loggers in batches, printing outside of the locks.
+     */
+    private static final class Writer implements Runnable {
+
+        @Override
+        public void run() {
+            while (true) {
+                AsyncLogger logger;
+                synchronized (PENDING) {
+                    draining = false;
+                    PENDING.notifyAll();
+                    while (PENDING.isEmpty()) {
+                        await(PENDING);
+                    }
+                    logger = PENDING.poll();
+                    draining = true;
+                }
+                logger.printBatch(logger.takeBatch());
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.ncornette.rx.test;
+
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Func0;
+
+/**
+ * Measures items queued by {@code observeOn}, between their emission upstream and their delivery
+ * downstream, and the {@code request(n)} calls it makes upstream.
+ * <p>
+ * Use {@link #observeOn(Scheduler)} with {@link Observable#compose(Observable.Transformer)} in place
+ * of {@link Observable#observeOn(Scheduler)}. Emitting more than requested is what ends up in a
+ * {@link rx.exceptions.MissingBackpressureException}.
+ */
+public final class BackpressureMonitor {
+
+    private final AtomicLong requestCalls = new AtomicLong();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong highWater = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+
+    /**
+     * @return a transformer observing on the scheduler, and measuring its queue.
+     */
+    public <T> Observable.Transformer<T, T> observeOn(final Scheduler scheduler) {
+        return new Observable.Transformer<T, T>() {
+            @Override
+            public Observable<T> call(final Observable<T> observable) {
+                return Observable.defer(new Func0<Observable<T>>() {
+                    @Override
+                    public Observable<T> call() {
+                        return monitor(observable, scheduler);
+                    }
+                });
+            }
+        };
+    }
+
+    private <T> Observable<T> monitor(Observable<T> observable, Scheduler scheduler) {
+        // Queued items of this subscription, dropped with it when unsubscribed.
+        final AtomicLong queued = new AtomicLong();
+        return observable
+                .doOnRequest(new Action1<Long>() {
+                    @Override
+                    public void call(Long n) {
+                        requestCalls.incrementAndGet();
+                        addRequested(n);
+                    }
+                })
+                .doOnNext(new Action1<T>() {
+                    @Override
+                    public void call(T t) {
+                        queued.incrementAndGet();
+                        long depth = emitted.incrementAndGet() - delivered.get();
+                        raise(highWater, depth);
+                        raise(peak, depth);
+                    }
+                })
+                .observeOn(scheduler)
+                .doOnNext(new Action1<T>() {
+                    @Override
+                    public void call(T t) {
+                        queued.decrementAndGet();
+                        delivered.incrementAndGet();
+                    }
+                })
+                .doOnUnsubscribe(new Action0() {
+                    @Override
+                    public void call() {
+                        delivered.addAndGet(queued.getAndSet(0));
+                    }
+                });
+    }
+
+    /**
+     * @return items emitted upstream and not delivered downstream yet.
+     */
+    public long queueDepth() {
+        return Math.max(0, emitted.get() - delivered.get());
+    }
+
+    /**
+     * @return maximum queue depth since this monitor was created.
+     */
+    public long highWater() {
+        return highWater.get();
+    }
+
+    /**
+     * @return maximum queue depth since the last {@link #resetPeak()}.
+     */
+    public long peak() {
+        return peak.get();
+    }
+
+    /**
+     * Starts a new peak measure from the current queue depth, {@link RxTestSchedulers} does it
+     * before each trigger.
+     */
+    public void resetPeak() {
+        peak.set(queueDepth());
+    }
+
+    public long requestCalls() {
+        return requestCalls.get();
+    }
+
+    /**
+     * @return items requested upstream, {@link Long#MAX_VALUE} when unbounded.
+     */
+    public long requested() {
+        return requested.get();
+    }
+
+    public long emitted() {
+        return emitted.get();
+    }
+
+    public long delivered() {
+        return delivered.get();
+    }
+
+    public void assertQueueDepthAtMost(long maxDepth) {
+        if (highWater() > maxDepth) {
+            throw new AssertionError(MessageFormat.format("queue depth {0} > {1}", highWater(), maxDepth));
+        }
+    }
+
+    /**
+     * Fails if more items were emitted than requested.
+     */
+    public void assertWithinRequested() {
+        if (emitted() > requested()) {
+            throw new AssertionError(MessageFormat.format("emitted {0} items > requested {1}", emitted(), requested()));
+        }
+    }
+
+    private void addRequested(long n) {
+        long current;
+        long next;
+        do {
+            current = requested.get();
+            next = current + n;
+            if (next < 0) next = Long.MAX_VALUE;
+        } while (!requested.compareAndSet(current, next));
+    }
+
+    private static void raise(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("depth {0}, peak {1}, high water {2}, requested {3} in {4} calls",
+                queueDepth(), peak(), highWater(), requested(), requestCalls());
+    }
+}
@@ -0,0 +1,107 @@
+package com.ncornette.rx.test;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits a single trigger of a scheduler must stay within, checked by {@link RxTestSchedulers}
+ * after each trigger. Unset limits are unlimited.
+ */
+public final class Budget {
+
+    private static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long maxWallNanos;
+    private final long maxActions;
+    private final long maxAllocatedBytes;
+    private final long maxEvents;
+    private final long maxQueueDepth;
+
+    private Budget(Builder builder) {
+        maxWallNanos = builder.maxWallNanos;
+        maxActions = builder.maxActions;
+        maxAllocatedBytes = builder.maxAllocatedBytes;
+        maxEvents = builder.maxEvents;
+        maxQueueDepth = builder.maxQueueDepth;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a description of each exceeded limit, empty when the trigger is within budget.
+     */
+    public List<String> violations(RxTestSchedulers.TriggerResult result) {
+        List<String> violations = new ArrayList<>();
+        long wallNanos = result.wallTime(TimeUnit.NANOSECONDS);
+        if (wallNanos > maxWallNanos) {
+            violations.add(MessageFormat.format("wall time {0}µs > {1}µs",
+                    TimeUnit.NANOSECONDS.toMicros(wallNanos), TimeUnit.NANOSECONDS.toMicros(maxWallNanos)));
+        }
+        if (result.actions() > maxActions) {
+            violations.add(MessageFormat.format("actions {0} > {1}", result.actions(), maxActions));
+        }
+        if (result.allocatedBytes() > maxAllocatedBytes) {
+            violations.add(MessageFormat.format("allocated {0} bytes > {1} bytes",
+                    result.allocatedBytes(), maxAllocatedBytes));
+        }
+        if (result.events() > maxEvents) {
+            violations.add(MessageFormat.format("events {0} > {1}", result.events(), maxEvents));
+        }
+        if (result.queuePeak() > maxQueueDepth) {
+            violations.add(MessageFormat.format("queue depth {0} > {1}", result.queuePeak(), maxQueueDepth));
+        }
+        return violations;
+    }
+
+    public static final class Builder {
+        private long maxWallNanos = UNLIMITED;
+        private long maxActions = UNLIMITED;
+        private long maxAllocatedBytes = UNLIMITED;
+        private long maxEvents = UNLIMITED;
+        private long maxQueueDepth = UNLIMITED;
+
+        private Builder() {
+        }
+
+        public Builder maxWallTime(long val, TimeUnit unit) {
+            maxWallNanos = unit.toNanos(val);
+            return this;
+        }
+
+        public Builder maxActions(long val) {
+            maxActions = val;
+            return this;
+        }
+
+        public Builder maxAllocatedBytes(long val) {
+            maxAllocatedBytes = val;
+            return this;
+        }
+
+        /**
+         * @param val maximum events counted by the scheduler, like requests counted by
+         *            {@link RxTestSchedulers.Builder#backgroundEventsCount(rx.functions.Func0)}.
+         */
+        public Builder maxEvents(long val) {
+            maxEvents = val;
+            return this;
+        }
+
+        /**
+         * @param val maximum items queued by {@link RxTestSchedulers#observeOnForeground()}, see
+         *            {@link RxTestSchedulers.TriggerResult#queuePeak()}.
+         */
+        public Builder maxQueueDepth(long val) {
+            maxQueueDepth = val;
+            return this;
+        }
+
+        public Budget build() {
+            return new Budget(this);
+        }
+    }
+}
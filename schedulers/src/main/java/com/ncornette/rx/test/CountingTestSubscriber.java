@@ -0,0 +1,142 @@
+package com.ncornette.rx.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import rx.Subscriber;
+import rx.observers.TestSubscriber;
+
+/**
+ * {@link TestSubscriber} counting {@code onNext} events instead of retaining them, so memory stays
+ * constant however long the stream is.
+ * <p>
+ * Only the last {@code recentEvents} values are kept, for diagnostics: {@link #getOnNextEvents()}
+ * returns them. Value assertions check the count of all values, and fail when more values were
+ * received than retained; {@link #assertRecentValues(Object[])} checks the retained ones. Error and
+ * completion events are retained as usual.
+ */
+public class CountingTestSubscriber<T> extends TestSubscriber<T> {
+
+    private final Subscriber<T> delegate;
+    private final Object[] recent;
+    private volatile long onNextCount;
+    private volatile Thread lastSeenThread;
+    private int nextIndex;
+
+    public CountingTestSubscriber(Subscriber<T> delegate, int recentEvents) {
+        super(delegate);
+        if (delegate == null) throw new IllegalArgumentException("[delegate] expected not to be null");
+        if (recentEvents < 0) throw new IllegalArgumentException("[recentEvents] expected not to be negative");
+        this.delegate = delegate;
+        this.recent = new Object[recentEvents];
+    }
+
+    public static <T> CountingTestSubscriber<T> create(Subscriber<T> delegate, int recentEvents) {
+        return new CountingTestSubscriber<>(delegate, recentEvents);
+    }
+
+    @Override
+    public void onNext(T t) {
+        synchronized (recent) {
+            if (recent.length > 0) {
+                recent[nextIndex] = t;
+                nextIndex = (nextIndex + 1) % recent.length;
+            }
+            onNextCount++;
+        }
+        lastSeenThread = Thread.currentThread();
+        delegate.onNext(t);
+    }
+
+    @Override
+    public Thread getLastSeenThread() {
+        return lastSeenThread;
+    }
+
+    public long onNextCount() {
+        return onNextCount;
+    }
+
+    /**
+     * @return the last values received, oldest first.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> getOnNextEvents() {
+        synchronized (recent) {
+            int size = (int) Math.min(onNextCount, recent.length);
+            List<T> events = new ArrayList<>(size);
+            int start = (nextIndex - size + recent.length) % Math.max(1, recent.length);
+            for (int i = 0; i < size; i++) {
+                events.add((T) recent[(start + i) % recent.length]);
+            }
+            return Collections.unmodifiableList(events);
+        }
+    }
+
+    @Override
+    public void assertValueCount(int count) {
+        if (onNextCount != count) {
+            throw new AssertionError("Number of onNext events differ; expected: " + count + ", actual: " + onNextCount);
+        }
+    }
+
+    /**
+     * Checks the count of {@code items}, then the values, as long as all of them are retained.
+     *
+     * @throws AssertionError if more values were received than retained, see {@link #assertRecentValues(Object[])}.
+     */
+    @Override
+    public void assertReceivedOnNext(List<T> items) {
+        assertValueCount(items.size());
+        if (items.size() > recent.length) {
+            throw new AssertionError("only the last " + recent.length + " values are retained, "
+                    + items.size() + " can't be checked");
+        }
+        assertRecentValues(items);
+    }
+
+    /**
+     * Checks the last values received, oldest first, whatever the count of older values.
+     */
+    @SafeVarargs
+    public final void assertRecentValues(T... values) {
+        assertRecentValues(Arrays.asList(values));
+    }
+
+    private void assertRecentValues(List<T> items) {
+        if (items.size() > recent.length) {
+            throw new AssertionError("only the last " + recent.length + " values are retained, "
+                    + items.size() + " expected");
+        }
+        List<T> events;
+        long count;
+        synchronized (recent) {
+            events = getOnNextEvents();
+            count = onNextCount;
+        }
+        if (events.size() < items.size()) {
+            throw new AssertionError("Number of onNext events differ; expected at least: " + items.size()
+                    + ", actual: " + events.size());
+        }
+        int offset = events.size() - items.size();
+        for (int i = 0; i < items.size(); i++) {
+            T expected = items.get(i);
+            T actual = events.get(offset + i);
+            if (!Objects.equals(expected, actual)) {
+                throw new AssertionError("Value at index: " + (count - items.size() + i) + " expected to be ["
+                        + expected + "] but was: [" + actual + "]");
+            }
+        }
+    }
+
+    @Override
+    public void assertNoValues() {
+        if (onNextCount != 0) {
+            throw new AssertionError("No onNext events expected yet some received: " + onNextCount);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.ncornette.rx.test;
+
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory histogram of durations in nanoseconds.
+ * <p>
+ * Values are counted in 8 linear sub-buckets per power of two, so percentiles are reported
+ * within 12.5% of the recorded values, whatever the number of records. Recording is thread-safe.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        long currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+            currentMax = max.get();
+        }
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long max(TimeUnit unit) {
+        return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param percentile between 0 and 100.
+     * @return upper bound of the bucket holding the percentile, 0 when nothing was recorded.
+     */
+    public long percentile(double percentile, TimeUnit unit) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return unit.convert(Math.min(upperBound(bucket), max.get()), TimeUnit.NANOSECONDS);
+            }
+        }
+        return max(unit);
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("p50 {0}µs, p90 {1}µs, p99 {2}µs, max {3}µs ({4} actions)",
+                percentile(50, TimeUnit.MICROSECONDS),
+                percentile(90, TimeUnit.MICROSECONDS),
+                percentile(99, TimeUnit.MICROSECONDS),
+                max(TimeUnit.MICROSECONDS),
+                count());
+    }
+}
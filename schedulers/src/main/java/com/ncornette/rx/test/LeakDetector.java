@@ -0,0 +1,261 @@
+package com.ncornette.rx.test;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.functions.Action1;
+import rx.functions.Func1;
+
+/**
+ * Tracks subscriptions still subscribed, and values retained by {@code cache()}, through weak
+ * references: what is left after a garbage collection is what the test still holds on to.
+ * <p>
+ * Caches are tracked when created with {@link #cache(String)} in place of {@link Observable#cache()}.
+ * Their values stay retained as long as the cached observable, or any of its subscribers, is
+ * reachable: a subscriber keeps its producer, even once completed.
+ */
+public final class LeakDetector {
+
+    private static final int GC_ATTEMPTS = 5;
+
+    /**
+     * Shallow estimate: 16 bytes per object, plus 2 bytes per char of strings, plus the elements of
+     * collections, maps and arrays.
+     */
+    public static final Func1<Object, Long> ESTIMATED_SIZE = new Func1<Object, Long>() {
+        @Override
+        public Long call(Object value) {
+            return estimatedSize(value, 0);
+        }
+    };
+
+    private final Func1<Object, Long> sizeOf;
+    private final List<TrackedSubscription> subscriptions = new ArrayList<>();
+    private final List<TrackedCache> caches = new ArrayList<>();
+
+    public LeakDetector() {
+        this(ESTIMATED_SIZE);
+    }
+
+    /**
+     * @param sizeOf estimated bytes retained by a cached value.
+     */
+    public LeakDetector(Func1<Object, Long> sizeOf) {
+        if (sizeOf == null) throw new IllegalArgumentException("[sizeOf] expected not to be null");
+        this.sizeOf = sizeOf;
+    }
+
+    /**
+     * Reports the subscription while it is reachable and not unsubscribed.
+     */
+    public void track(Subscription subscription, String description) {
+        if (subscription == null) throw new IllegalArgumentException("[subscription] expected not to be null");
+        synchronized (subscriptions) {
+            subscriptions.add(new TrackedSubscription(subscription, description));
+        }
+    }
+
+    /**
+     * @return a transformer caching like {@link Observable#cache()}, and tracking the cached values.
+     */
+    public <T> Observable.Transformer<T, T> cache(final String name) {
+        return new Observable.Transformer<T, T>() {
+            @Override
+            public Observable<T> call(Observable<T> observable) {
+                final TrackedCache cache = new TrackedCache(name);
+                // Retained by the cache source, so collected with the cached values.
+                Action1<T> counter = new Action1<T>() {
+                    @Override
+                    public void call(T t) {
+                        cache.values.incrementAndGet();
+                        cache.bytes.addAndGet(sizeOf.call(t));
+                    }
+                };
+                cache.reference = new WeakReference<Object>(counter);
+                synchronized (caches) {
+                    caches.add(cache);
+                }
+                return observable.doOnNext(counter).cache();
+            }
+        };
+    }
+
+    /**
+     * @return descriptions of the subscriptions reachable and not unsubscribed.
+     */
+    public List<String> liveSubscriptions() {
+        List<String> live = new ArrayList<>();
+        synchronized (subscriptions) {
+            Iterator<TrackedSubscription> iterator = subscriptions.iterator();
+            while (iterator.hasNext()) {
+                TrackedSubscription tracked = iterator.next();
+                Subscription subscription = tracked.reference.get();
+                if (subscription == null || subscription.isUnsubscribed()) {
+                    iterator.remove();
+                } else {
+                    live.add(tracked.description);
+                }
+            }
+        }
+        return live;
+    }
+
+    /**
+     * @return caches still reachable, with their values.
+     */
+    public List<String> retainedCaches() {
+        List<String> retained = new ArrayList<>();
+        for (TrackedCache cache : reachableCaches()) {
+            retained.add(cache.toString());
+        }
+        return retained;
+    }
+
+    public long cachedValues() {
+        long values = 0;
+        for (TrackedCache cache : reachableCaches()) {
+            values += cache.values.get();
+        }
+        return values;
+    }
+
+    public long cachedBytes() {
+        long bytes = 0;
+        for (TrackedCache cache : reachableCaches()) {
+            bytes += cache.bytes.get();
+        }
+        return bytes;
+    }
+
+    /**
+     * Fails if a subscription is still live or a cache still retains values, once garbage is
+     * collected: collections are repeated while leaks are found, up to {@value #GC_ATTEMPTS} times.
+     */
+    public void assertNoLeaks() {
+        List<String> leaks = leaks();
+        for (int i = 0; i < GC_ATTEMPTS && !leaks.isEmpty(); i++) {
+            collectGarbage();
+            leaks = leaks();
+        }
+        if (leaks.isEmpty()) return;
+        StringBuilder message = new StringBuilder().append(leaks.size()).append(" leak(s):");
+        for (String leak : leaks) {
+            message.append("\n - ").append(leak);
+        }
+        throw new AssertionError(message.toString());
+    }
+
+    private List<String> leaks() {
+        List<String> leaks = new ArrayList<>();
+        for (String subscription : liveSubscriptions()) {
+            leaks.add("subscription " + subscription);
+        }
+        for (TrackedCache cache : reachableCaches()) {
+            if (cache.values.get() > 0) leaks.add("cache " + cache);
+        }
+        return leaks;
+    }
+
+    /**
+     * Forgets every tracked subscription and cache.
+     */
+    public void reset() {
+        synchronized (subscriptions) {
+            subscriptions.clear();
+        }
+        synchronized (caches) {
+            caches.clear();
+        }
+    }
+
+    private List<TrackedCache> reachableCaches() {
+        List<TrackedCache> reachable = new ArrayList<>();
+        synchronized (caches) {
+            Iterator<TrackedCache> iterator = caches.iterator();
+            while (iterator.hasNext()) {
+                TrackedCache cache = iterator.next();
+                if (cache.reference.get() == null) {
+                    iterator.remove();
+                } else {
+                    reachable.add(cache);
+                }
+            }
+        }
+        return reachable;
+    }
+
+    private static void collectGarbage() {
+        System.gc();
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long estimatedSize(Object value, int depth) {
+        if (value == null) return 0;
+        long size = 16;
+        if (value instanceof CharSequence) {
+            size += 2L * ((CharSequence) value).length();
+        } else if (depth < 3 && value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                size += 8 + estimatedSize(element, depth + 1);
+            }
+        } else if (depth < 3 && value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimatedSize(entry.getKey(), depth + 1) + estimatedSize(entry.getValue(), depth + 1);
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            size += 8L * length;
+            if (depth < 3 && !value.getClass().getComponentType().isPrimitive()) {
+                for (int i = 0; i < length; i++) {
+                    size += estimatedSize(Array.get(value, i), depth + 1);
+                }
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("{0} live subscriptions, {1} cached values (~{2} bytes)",
+                liveSubscriptions().size(), cachedValues(), cachedBytes());
+    }
+
+    private static final class TrackedSubscription {
+        private final WeakReference<Subscription> reference;
+        private final String description;
+
+        TrackedSubscription(Subscription subscription, String description) {
+            this.reference = new WeakReference<>(subscription);
+            this.description = description;
+        }
+    }
+
+    private static final class TrackedCache {
+        private final String name;
+        private final AtomicLong values = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private WeakReference<Object> reference;
+
+        TrackedCache(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return MessageFormat.format("{0}: {1} values (~{2} bytes)", name, values.get(), bytes.get());
+        }
+    }
+}
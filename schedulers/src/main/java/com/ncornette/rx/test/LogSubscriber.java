@@ -1,14 +1,26 @@
 package com.ncornette.rx.test;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
 import rx.Subscriber;
 
 public class LogSubscriber<T> extends Subscriber<T> {
 
     private RxTestSchedulers.Logger logger;
     private Subscriber<T> subscriber;
+    private final Format format;
+    private long nextCount;
 
     public LogSubscriber(RxTestSchedulers.Logger logger, Subscriber<T> subscriber) {
+        this(logger, subscriber, Format.FULL);
+    }
+
+    public LogSubscriber(RxTestSchedulers.Logger logger, Subscriber<T> subscriber, Format format) {
+        if (format == null) throw new IllegalArgumentException("[format] expected not to be null");
         this.logger = logger;
+        this.format = format;
         if (subscriber == null) {
             this.subscriber = new Subscriber<T>() {
                 @Override public void onCompleted() {/* NO-OP */}
@@ -28,18 +40,110 @@ public class LogSubscriber<T> extends Subscriber<T> {
 
         @Override
         public void onError(Throwable e) {
-            logger.i("--> onError: " + e);
+            if (logger.isLoggable(RxTestSchedulers.Logger.Level.INFO)) {
+                logger.i("--> onError: " + e);
+            }
             subscriber.onError(e);
         }
 
         @Override
         public void onNext(T o) {
-            logger.i("--> onNext: " + o);
+            long count = ++nextCount;
+            if (logger.isLoggable(RxTestSchedulers.Logger.Level.INFO) && (count - 1) % format.sampleEvery == 0) {
+                if (format.sampleEvery > 1) {
+                    logger.i("--> onNext #" + count + ": " + format.describe(o));
+                } else {
+                    logger.i("--> onNext: " + format.describe(o));
+                }
+            }
             subscriber.onNext(o);
         }
 
     public static <T> Subscriber<T> create(RxTestSchedulers.Logger logger, Subscriber<T> subscriber) {
         return new LogSubscriber<>(logger, subscriber);
     }
-}
 
+    public static <T> Subscriber<T> create(RxTestSchedulers.Logger logger, Subscriber<T> subscriber, Format format) {
+        return new LogSubscriber<>(logger, subscriber, format);
+    }
+
+    /**
+     * How much of each event is logged. Collections and arrays larger than {@code maxElements}
+     * are summarized by type, size and first elements; only one event in {@code sampleEvery} is logged.
+     */
+    public static final class Format {
+
+        public static final Format FULL = builder().build();
+        public static final Format SUMMARY = builder().maxElements(0).build();
+
+        private final int maxElements;
+        private final int sampleEvery;
+
+        private Format(Builder builder) {
+            maxElements = builder.maxElements;
+            sampleEvery = builder.sampleEvery;
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        String describe(Object o) {
+            if (o instanceof Object[]) {
+                return describe(o, Arrays.asList((Object[]) o));
+            }
+            if (o instanceof Collection) {
+                return describe(o, (Collection<?>) o);
+            }
+            return String.valueOf(o);
+        }
+
+        private String describe(Object o, Collection<?> elements) {
+            if (elements.size() <= maxElements) {
+                return o instanceof Object[] ? elements.toString() : String.valueOf(o);
+            }
+            StringBuilder summary = new StringBuilder()
+                    .append(o.getClass().getSimpleName())
+                    .append("(size=").append(elements.size()).append(')');
+            if (maxElements > 0) {
+                summary.append('[');
+                Iterator<?> iterator = elements.iterator();
+                for (int i = 0; i < maxElements; i++) {
+                    summary.append(iterator.next()).append(", ");
+                }
+                summary.append("...]");
+            }
+            return summary.toString();
+        }
+
+        public static final class Builder {
+            private int maxElements = Integer.MAX_VALUE;
+            private int sampleEvery = 1;
+
+            private Builder() {
+            }
+
+            /**
+             * @param val elements of collections and arrays logged before summarizing, 0 to log type and size only.
+             */
+            public Builder maxElements(int val) {
+                if (val < 0) throw new IllegalArgumentException("[maxElements] expected not to be negative");
+                maxElements = val;
+                return this;
+            }
+
+            /**
+             * @param val log the first event, then every {@code val}th one.
+             */
+            public Builder sampleEvery(int val) {
+                if (val < 1) throw new IllegalArgumentException("[sampleEvery] expected to be positive");
+                sampleEvery = val;
+                return this;
+            }
+
+            public Format build() {
+                return new Format(this);
+            }
+        }
+    }
+}
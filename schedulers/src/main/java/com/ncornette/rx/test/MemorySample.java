@@ -0,0 +1,89 @@
+package com.ncornette.rx.test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Allocated bytes of some threads, and garbage collector counters, at one point in time.
+ * Allocated bytes are -1 when the JVM can't measure them.
+ */
+final class MemorySample {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final long[] threadIds;
+    private final long[] allocatedBytes;
+    private final long gcCount;
+    private final long gcMillis;
+
+    private MemorySample(long[] threadIds, long[] allocatedBytes, long gcCount, long gcMillis) {
+        this.threadIds = threadIds;
+        this.allocatedBytes = allocatedBytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+    }
+
+    /**
+     * @param threadIds threads measured besides the current one.
+     */
+    static MemorySample take(Collection<Long> threadIds) {
+        long[] ids = new long[threadIds.size() + 1];
+        ids[0] = Thread.currentThread().getId();
+        int i = 1;
+        for (Long threadId : threadIds) {
+            ids[i++] = threadId;
+        }
+
+        long[] allocatedBytes = null;
+        if (isAllocationSupported()) {
+            allocatedBytes = ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(ids);
+        }
+
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GarbageCollectorMXBean collector : COLLECTORS) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+        return new MemorySample(ids, allocatedBytes, gcCount, gcMillis);
+    }
+
+    private static boolean isAllocationSupported() {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) return false;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * @return bytes allocated by the sampled threads since the start sample, or -1 if unknown.
+     * Threads missing from the start sample are counted from their creation.
+     */
+    long allocatedBytesSince(MemorySample start) {
+        if (allocatedBytes == null || start.allocatedBytes == null) return -1;
+        long total = 0;
+        for (int i = 0; i < threadIds.length; i++) {
+            if (allocatedBytes[i] < 0) continue;
+            total += allocatedBytes[i] - Math.max(0, start.allocatedBytes(threadIds[i]));
+        }
+        return total;
+    }
+
+    private long allocatedBytes(long threadId) {
+        for (int i = 0; i < threadIds.length; i++) {
+            if (threadIds[i] == threadId) return allocatedBytes[i];
+        }
+        return 0;
+    }
+
+    long gcCountSince(MemorySample start) {
+        return gcCount - start.gcCount;
+    }
+
+    long gcMillisSince(MemorySample start) {
+        return gcMillis - start.gcMillis;
+    }
+}
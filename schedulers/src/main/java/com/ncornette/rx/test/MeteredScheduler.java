@@ -0,0 +1,308 @@
+package com.ncornette.rx.test;
+
+import java.lang.management.ManagementFactory;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+
+/**
+ * {@link Scheduler} decorator measuring, for any scheduler like {@code Schedulers.io()}, how long
+ * actions wait before running, how long they run, and how many are running, so saturation shows
+ * on live servers through JMX.
+ * <p>
+ * Counters are {@link StripedCounter}s, so threads of a busy pool rarely contend on them. Histograms
+ * are shared by all threads, so they only record a sample of the actions.
+ */
+public final class MeteredScheduler extends Scheduler implements MeteredSchedulerMXBean {
+
+    public static final String JMX_DOMAIN = "com.ncornette.rx.test";
+    public static final int DEFAULT_HISTOGRAM_SAMPLING = 16;
+
+    private final Scheduler actual;
+    private final StripedCounter scheduled = new StripedCounter();
+    private final StripedCounter started = new StripedCounter();
+    private final StripedCounter completed = new StripedCounter();
+    private final StripedCounter failed = new StripedCounter();
+    private final StripedCounter cancelled = new StripedCounter();
+    private final StripedCounter queueWaitNanos = new StripedCounter();
+    private final StripedCounter executionNanos = new StripedCounter();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram execution = new LatencyHistogram();
+    private final int histogramSampling;
+    private volatile ObjectName objectName;
+
+    public MeteredScheduler(Scheduler actual) {
+        this(actual, DEFAULT_HISTOGRAM_SAMPLING);
+    }
+
+    /**
+     * @param histogramSampling one action in this many, picked at random, is recorded in the
+     *                          histograms: 1 records all actions, 0 none.
+     */
+    public MeteredScheduler(Scheduler actual, int histogramSampling) {
+        if (actual == null) throw new IllegalArgumentException("[actual] expected not to be null");
+        if (histogramSampling < 0) throw new IllegalArgumentException("[histogramSampling] expected not to be negative");
+        this.actual = actual;
+        this.histogramSampling = histogramSampling;
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new MeteredWorker(actual.createWorker());
+    }
+
+    @Override
+    public long now() {
+        return actual.now();
+    }
+
+    /**
+     * Registers this scheduler in the platform MBean server, under {@value #JMX_DOMAIN}.
+     *
+     * @return name of the registered MBean.
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        if (name == null) throw new IllegalArgumentException("[name] expected not to be null");
+        if (objectName != null) throw new IllegalStateException("already registered as " + objectName);
+        ObjectName registered = new ObjectName(JMX_DOMAIN + ":type=" + MeteredScheduler.class.getSimpleName()
+                + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+        objectName = registered;
+        return registered;
+    }
+
+    public synchronized void unregister() throws JMException {
+        if (objectName == null) return;
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        objectName = null;
+    }
+
+    @Override
+    public long getScheduledActions() {
+        return scheduled.get();
+    }
+
+    @Override
+    public long getCompletedActions() {
+        return completed.get();
+    }
+
+    @Override
+    public long getFailedActions() {
+        return failed.get();
+    }
+
+    @Override
+    public long getCancelledActions() {
+        return cancelled.get();
+    }
+
+    @Override
+    public long getInFlightActions() {
+        // Started first, so a concurrent read may miss an action but never count it twice.
+        long done = completed.get() + failed.get();
+        return Math.max(0, started.get() - done);
+    }
+
+    @Override
+    public long getMeanQueueWaitMicros() {
+        return mean(queueWaitNanos, started.get());
+    }
+
+    @Override
+    public long getQueueWaitP99Micros() {
+        return queueWait.percentile(99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public long getMeanExecutionMicros() {
+        return mean(executionNanos, completed.get() + failed.get());
+    }
+
+    @Override
+    public long getExecutionP99Micros() {
+        return execution.percentile(99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public long getMaxExecutionMicros() {
+        return execution.max(TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * @return time between the due time of sampled actions and their start.
+     */
+    public LatencyHistogram queueWait() {
+        return queueWait;
+    }
+
+    /**
+     * @return time sampled actions took to run.
+     */
+    public LatencyHistogram execution() {
+        return execution;
+    }
+
+    /**
+     * Clears counters and histograms. Actions running meanwhile may be partly counted.
+     */
+    @Override
+    public void reset() {
+        scheduled.reset();
+        started.reset();
+        completed.reset();
+        failed.reset();
+        cancelled.reset();
+        queueWaitNanos.reset();
+        executionNanos.reset();
+        queueWait.reset();
+        execution.reset();
+    }
+
+    private static long mean(StripedCounter totalNanos, long count) {
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.get() / count);
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("{0} scheduled, {1} in flight, {2} completed, {3} failed, {4} cancelled, "
+                        + "wait {5}µs (p99 {6}µs), execution {7}µs (p99 {8}µs)",
+                getScheduledActions(), getInFlightActions(), getCompletedActions(), getFailedActions(),
+                getCancelledActions(), getMeanQueueWaitMicros(), getQueueWaitP99Micros(), getMeanExecutionMicros(),
+                getExecutionP99Micros());
+    }
+
+    private final class MeteredWorker extends Worker {
+
+        private final Worker actual;
+        // Not started yet, cancelled when the worker is unsubscribed.
+        private final Set<MeteredAction> pending = Collections.newSetFromMap(new ConcurrentHashMap<MeteredAction, Boolean>());
+
+        MeteredWorker(Worker actual) {
+            this.actual = actual;
+        }
+
+        @Override
+        public Subscription schedule(Action0 action) {
+            MeteredAction meteredAction = new MeteredAction(action, this, System.nanoTime());
+            return track(meteredAction, actual.schedule(meteredAction));
+        }
+
+        @Override
+        public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+            long dueNanos = System.nanoTime() + Math.max(0, unit.toNanos(delayTime));
+            MeteredAction meteredAction = new MeteredAction(action, this, dueNanos);
+            return track(meteredAction, actual.schedule(meteredAction, delayTime, unit));
+        }
+
+        private Subscription track(MeteredAction action, Subscription subscription) {
+            // Unsubscribed right away by an unsubscribed worker, or once the action is done.
+            if (subscription.isUnsubscribed()) action.cancel();
+            return new MeteredSubscription(action, subscription);
+        }
+
+        @Override
+        public long now() {
+            return actual.now();
+        }
+
+        @Override
+        public void unsubscribe() {
+            actual.unsubscribe();
+            for (MeteredAction action : pending) {
+                action.cancel();
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return actual.isUnsubscribed();
+        }
+    }
+
+    private final class MeteredSubscription implements Subscription {
+
+        private final MeteredAction action;
+        private final Subscription actual;
+
+        MeteredSubscription(MeteredAction action, Subscription actual) {
+            this.action = action;
+            this.actual = actual;
+        }
+
+        @Override
+        public void unsubscribe() {
+            action.cancel();
+            actual.unsubscribe();
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return actual.isUnsubscribed();
+        }
+    }
+
+    /**
+     * Action either started or cancelled, whichever happens first: set once claimed.
+     */
+    private final class MeteredAction extends AtomicBoolean implements Action0 {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Action0 action;
+        private final MeteredWorker worker;
+        private final long dueNanos;
+
+        MeteredAction(Action0 action, MeteredWorker worker, long dueNanos) {
+            this.action = action;
+            this.worker = worker;
+            this.dueNanos = dueNanos;
+            scheduled.increment();
+            worker.pending.add(this);
+        }
+
+        void cancel() {
+            if (!compareAndSet(false, true)) return;
+            worker.pending.remove(this);
+            cancelled.increment();
+        }
+
+        @Override
+        public void call() {
+            if (!compareAndSet(false, true)) return;
+            worker.pending.remove(this);
+            long startTime = System.nanoTime();
+            long waitNanos = Math.max(0, startTime - dueNanos);
+            boolean sampled = histogramSampling == 1
+                    || histogramSampling > 1 && ThreadLocalRandom.current().nextInt(histogramSampling) == 0;
+            started.increment();
+            queueWaitNanos.add(waitNanos);
+            if (sampled) queueWait.record(waitNanos);
+            boolean success = false;
+            try {
+                action.call();
+                success = true;
+            } finally {
+                long elapsed = System.nanoTime() - startTime;
+                executionNanos.add(elapsed);
+                if (sampled) execution.record(elapsed);
+                if (success) {
+                    completed.increment();
+                } else {
+                    failed.increment();
+                }
+            }
+        }
+    }
+}
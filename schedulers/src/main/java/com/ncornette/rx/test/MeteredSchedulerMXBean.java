@@ -0,0 +1,36 @@
+package com.ncornette.rx.test;
+
+/**
+ * Management interface of a {@link MeteredScheduler}, registered with {@link MeteredScheduler#register(String)}.
+ * Times are in microseconds, percentiles and maximum are measured on sampled actions.
+ */
+public interface MeteredSchedulerMXBean {
+
+    long getScheduledActions();
+
+    long getCompletedActions();
+
+    long getFailedActions();
+
+    /**
+     * @return actions unsubscribed before they started, or scheduled on an unsubscribed worker.
+     */
+    long getCancelledActions();
+
+    /**
+     * @return actions running at the moment.
+     */
+    long getInFlightActions();
+
+    long getMeanQueueWaitMicros();
+
+    long getQueueWaitP99Micros();
+
+    long getMeanExecutionMicros();
+
+    long getExecutionP99Micros();
+
+    long getMaxExecutionMicros();
+
+    void reset();
+}
@@ -0,0 +1,302 @@
+package com.ncornette.rx.test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.functions.Func1;
+import rx.schedulers.TestScheduler;
+
+/**
+ * {@link TestScheduler} counting and timing the actions it executes, and accumulating a virtual
+ * cost for each of them when an action cost is set.
+ * <p>
+ * It also mirrors the pending actions queue, so the virtual time of the next due action is known
+ * without stepping through empty time.
+ * <p>
+ * Scheduling is synchronized, so actions may schedule from other threads, like the ones of
+ * {@link ParallelTestScheduler}.
+ */
+public class MeteredTestScheduler extends TestScheduler {
+
+    private static final Comparator<MeteredAction> BY_DUE_TIME = new Comparator<MeteredAction>() {
+        @Override
+        public int compare(MeteredAction a, MeteredAction b) {
+            if (a.dueNanos != b.dueNanos) return a.dueNanos < b.dueNanos ? -1 : 1;
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    private final PriorityQueue<MeteredAction> pending = new PriorityQueue<>(11, BY_DUE_TIME);
+    private final LatencyHistogram actionLatency = new LatencyHistogram();
+    private volatile String slowestAction;
+    private volatile long slowestActionNanos;
+    private Func1<? super Action0, Long> actionCost;
+    // Written by triggers only, under the scheduler lock; volatile for readers on other threads.
+    private volatile long executedActions;
+    private volatile long actionCostNanos;
+    private final AtomicLong chargedNanos = new AtomicLong();
+    private final Map<Long, Long> chargedNanosByThread = new HashMap<>();
+    private long nowNanos;
+    private long sequence;
+
+    /**
+     * @param val virtual nanoseconds charged for each executed action, or null to charge nothing.
+     */
+    public void actionCost(Func1<? super Action0, Long> val) {
+        actionCost = val;
+    }
+
+    public long executedActions() {
+        return executedActions;
+    }
+
+    public long actionCostNanos() {
+        return actionCostNanos;
+    }
+
+    /**
+     * Charges virtual time spent by the running action waiting on something simulated, like a
+     * network. {@link RxTestSchedulers} advances the clock by the time charged, whatever its
+     * {@link RxTestSchedulers.Clock}, once the charging actions have run: what they emitted is
+     * already delivered, so operators timing it, like {@code timeout()}, don't see that time.
+     */
+    public void charge(long time, TimeUnit unit) {
+        long nanos = unit.toNanos(time);
+        chargedNanos.addAndGet(nanos);
+        Long threadId = Thread.currentThread().getId();
+        synchronized (chargedNanosByThread) {
+            Long charged = chargedNanosByThread.get(threadId);
+            chargedNanosByThread.put(threadId, charged == null ? nanos : charged + nanos);
+        }
+    }
+
+    /**
+     * @return the longest time charged by one thread since the last call: actions of a thread
+     * wait one after the other, actions of different threads wait at the same time.
+     */
+    public long takeChargedNanos() {
+        synchronized (chargedNanosByThread) {
+            long longest = 0;
+            for (Long charged : chargedNanosByThread.values()) {
+                longest = Math.max(longest, charged);
+            }
+            chargedNanosByThread.clear();
+            return longest;
+        }
+    }
+
+    /**
+     * @return virtual time charged by actions so far.
+     */
+    public long chargedNanos() {
+        return chargedNanos.get();
+    }
+
+    /**
+     * @return real time taken by each executed action.
+     */
+    public LatencyHistogram actionLatency() {
+        return actionLatency;
+    }
+
+    /**
+     * @return class name of the action that took the longest real time, or null.
+     */
+    public String slowestAction() {
+        return slowestAction;
+    }
+
+    public long nowNanos() {
+        return nowNanos;
+    }
+
+    /**
+     * @return virtual time in nanoseconds of the next pending action, never before {@link #nowNanos()},
+     * or {@link Long#MAX_VALUE} when no action is pending.
+     */
+    public synchronized long nextActionNanos() {
+        MeteredAction head = pending.peek();
+        while (head != null && (head.done || head.worker.isUnsubscribed())) {
+            pending.poll();
+            head = pending.peek();
+        }
+        if (head == null) return Long.MAX_VALUE;
+        return Math.max(head.dueNanos, nowNanos);
+    }
+
+    /**
+     * @return actions scheduled and not yet executed nor unsubscribed.
+     */
+    public synchronized int pendingActions() {
+        return pending.size();
+    }
+
+    public boolean hasPendingActions() {
+        return nextActionNanos() != Long.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized void advanceTimeTo(long delayTime, TimeUnit unit) {
+        super.advanceTimeTo(delayTime, unit);
+        nowNanos = unit.toNanos(delayTime);
+    }
+
+    @Override
+    public synchronized void triggerActions() {
+        super.triggerActions();
+    }
+
+    /**
+     * Runs a due action on the triggering thread. Subclasses may run it elsewhere, as long as
+     * actions of the same worker still run one at a time, in order.
+     */
+    protected void execute(Action0 action, Worker worker) {
+        runTimed(action);
+    }
+
+    /**
+     * Runs the action, recording its real time in {@link #actionLatency()}.
+     */
+    protected final void runTimed(Action0 action) {
+        long startTime = System.nanoTime();
+        try {
+            action.call();
+        } finally {
+            long elapsed = System.nanoTime() - startTime;
+            actionLatency.record(elapsed);
+            if (elapsed > slowestActionNanos) {
+                recordSlowest(action, elapsed);
+            }
+        }
+    }
+
+    private synchronized void recordSlowest(Action0 action, long elapsed) {
+        if (elapsed > slowestActionNanos) {
+            slowestActionNanos = elapsed;
+            slowestAction = action.getClass().getName();
+        }
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new MeteredWorker(super.createWorker());
+    }
+
+    private Subscription track(MeteredAction action, Subscription subscription) {
+        pending.add(action);
+        return new MeteredSubscription(action, subscription);
+    }
+
+    private final class MeteredAction implements Action0 {
+
+        private final Action0 action;
+        private final Worker worker;
+        private final long dueNanos;
+        private final long sequence;
+        private boolean done;
+
+        /**
+         * @param dueNanos 0 for immediate actions, as {@link TestScheduler} does.
+         */
+        MeteredAction(Action0 action, Worker worker, long dueNanos) {
+            this.action = action;
+            this.worker = worker;
+            this.dueNanos = dueNanos;
+            this.sequence = MeteredTestScheduler.this.sequence++;
+        }
+
+        @Override
+        public void call() {
+            // Called by triggers under the scheduler lock, usually at the head of the queue.
+            done = true;
+            pending.remove(this);
+            if (dueNanos != 0) {
+                nowNanos = dueNanos;
+            }
+            executedActions++;
+            if (actionCost != null) {
+                actionCostNanos += actionCost.call(action);
+            }
+            execute(action, worker);
+        }
+    }
+
+    private final class MeteredSubscription implements Subscription {
+
+        private final MeteredAction action;
+        private final Subscription actual;
+
+        MeteredSubscription(MeteredAction action, Subscription actual) {
+            this.action = action;
+            this.actual = actual;
+        }
+
+        @Override
+        public void unsubscribe() {
+            synchronized (MeteredTestScheduler.this) {
+                action.done = true;
+                pending.remove(action);
+                actual.unsubscribe();
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return actual.isUnsubscribed();
+        }
+    }
+
+    private final class MeteredWorker extends Worker {
+
+        private final Worker actual;
+
+        MeteredWorker(Worker actual) {
+            this.actual = actual;
+        }
+
+        @Override
+        public Subscription schedule(Action0 action) {
+            synchronized (MeteredTestScheduler.this) {
+                MeteredAction meteredAction = new MeteredAction(action, actual, 0);
+                return track(meteredAction, actual.schedule(meteredAction));
+            }
+        }
+
+        @Override
+        public Subscription schedule(Action0 action, long delayTime, TimeUnit unit) {
+            synchronized (MeteredTestScheduler.this) {
+                MeteredAction meteredAction = new MeteredAction(action, actual, nowNanos + unit.toNanos(delayTime));
+                return track(meteredAction, actual.schedule(meteredAction, delayTime, unit));
+            }
+        }
+
+        @Override
+        public long now() {
+            return actual.now();
+        }
+
+        @Override
+        public void unsubscribe() {
+            synchronized (MeteredTestScheduler.this) {
+                actual.unsubscribe();
+                // Actions of an unsubscribed worker never run.
+                Iterator<MeteredAction> iterator = pending.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().worker == actual) iterator.remove();
+                }
+            }
+        }
+
+        @Override
+        public boolean isUnsubscribed() {
+            return actual.isUnsubscribed();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.ncornette.rx.test;
+
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.plugins.RxJavaObservableExecutionHook;
+import rx.plugins.RxJavaPlugins;
+
+/**
+ * Counts {@code onNext} events and their self time for each operator of the subscribed pipelines,
+ * through {@link RxJavaObservableExecutionHook#onLift(Observable.Operator)}.
+ * <p>
+ * Self time excludes the time spent in downstream operators of the same thread. Time spent in the
+ * final subscriber is attributed to the last operator. A pipeline is a chain of lifted operators,
+ * named after the call subscribing it and the subscriber it feeds, so operators like
+ * {@code concatMap} or {@code subscribeOn} start new pipelines.
+ * <p>
+ * RxJava reads its hook once, when {@link Observable} is loaded, so the {@link Hook} must be
+ * registered first, with the system property {@value #HOOK_PROPERTY} set to its class name, or with
+ * {@link #install()} before any observable is created.
+ * <p>
+ * A started profiler wraps the operators subscribed by every later test, until stopped: use
+ * {@link #rule()}, or call {@link #stop()} at the end of the test.
+ */
+public final class OperatorProfiler {
+
+    public static final String HOOK_PROPERTY = "rxjava.plugin.RxJavaObservableExecutionHook.implementation";
+
+    private static final String[] SKIPPED_PACKAGES = {"rx.", "java.", "sun."};
+    private static final List<String> SKIPPED_CLASSES = Arrays.asList(
+            OperatorProfiler.class.getName(),
+            RxTestSchedulers.class.getName(),
+            MeteredTestScheduler.class.getName(),
+            ParallelTestScheduler.class.getName(),
+            BackpressureMonitor.class.getName());
+
+    private static volatile OperatorProfiler active;
+
+    private static final ThreadLocal<Frames> FRAMES = new ThreadLocal<Frames>() {
+        @Override
+        protected Frames initialValue() {
+            return new Frames();
+        }
+    };
+
+    private final Map<String, Pipeline> pipelines = new LinkedHashMap<>();
+
+    /**
+     * Registers the {@link Hook}, unless it was registered with {@value #HOOK_PROPERTY}.
+     *
+     * @throws IllegalStateException if RxJava already uses another hook.
+     */
+    public static void install() {
+        try {
+            RxJavaPlugins.getInstance().registerObservableExecutionHook(new Hook());
+        } catch (IllegalStateException e) {
+            if (!(RxJavaPlugins.getInstance().getObservableExecutionHook() instanceof Hook)) {
+                throw new IllegalStateException("expected " + Hook.class.getName() + " as RxJava hook, set system property "
+                        + HOOK_PROPERTY + " or call install() before using Observable", e);
+            }
+        }
+    }
+
+    /**
+     * Profiles pipelines subscribed from now on, in place of the previously started profiler.
+     */
+    public void start() {
+        install();
+        active = this;
+    }
+
+    public void stop() {
+        if (active == this) active = null;
+    }
+
+    /**
+     * Starts profiling before each test, and stops after it, so operators of later tests are not
+     * wrapped anymore.
+     */
+    public TestRule rule() {
+        return new TestWatcher() {
+            @Override
+            protected void starting(Description description) {
+                start();
+            }
+
+            @Override
+            protected void finished(Description description) {
+                stop();
+            }
+        };
+    }
+
+    /**
+     * @return profiled pipelines, in the order they were first subscribed.
+     */
+    public List<Pipeline> pipelines() {
+        synchronized (pipelines) {
+            return new ArrayList<>(pipelines.values());
+        }
+    }
+
+    /**
+     * Logs operators with events since the last call, pipeline by pipeline.
+     */
+    void log(RxTestSchedulers.Logger logger, String border) {
+        for (Pipeline pipeline : pipelines()) {
+            List<OperatorStats> operators = pipeline.operators();
+            boolean hasEvents = false;
+            for (OperatorStats operator : operators) {
+                hasEvents |= operator.onNextCount() > operator.loggedOnNextCount;
+            }
+            if (!hasEvents) continue;
+            logger.i(border + " {0}", pipeline.name());
+            for (OperatorStats operator : operators) {
+                long onNextCount = operator.onNextCount();
+                long selfNanos = operator.selfNanos.get();
+                logger.i(border + "  {0}: {1} onNext, {2}µs", operator.name(), onNextCount - operator.loggedOnNextCount,
+                        TimeUnit.NANOSECONDS.toMicros(selfNanos - operator.loggedSelfNanos));
+                operator.loggedOnNextCount = onNextCount;
+                operator.loggedSelfNanos = selfNanos;
+            }
+        }
+    }
+
+    private <T, R> Observable.Operator<R, T> wrap(final Observable.Operator<? extends R, ? super T> operator) {
+        return new Observable.Operator<R, T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Subscriber<? super T> call(Subscriber<? super R> child) {
+                Subscriber<? super T> parent = ((Observable.Operator<R, T>) operator).call(child);
+                if (child instanceof ProfiledSubscriber) {
+                    ProfiledSubscriber<?> downstream = (ProfiledSubscriber<?>) child;
+                    int depth = downstream.depth + 1;
+                    return new ProfiledSubscriber<>(parent, downstream.stats.pipeline.operator(operator, depth), depth);
+                }
+                Pipeline pipeline = pipeline(callSite() + " → " + name(child));
+                return new ProfiledSubscriber<>(parent, pipeline.operator(operator, 0), 0);
+            }
+        };
+    }
+
+    private Pipeline pipeline(String name) {
+        synchronized (pipelines) {
+            Pipeline pipeline = pipelines.get(name);
+            if (pipeline == null) {
+                pipeline = new Pipeline(name);
+                pipelines.put(name, pipeline);
+            }
+            return pipeline;
+        }
+    }
+
+    private static String callSite() {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            if (!isSkipped(element.getClassName())) {
+                String className = element.getClassName();
+                return className.substring(className.lastIndexOf('.') + 1) + "." + element.getMethodName()
+                        + "(" + element.getFileName() + ":" + element.getLineNumber() + ")";
+            }
+        }
+        return "?";
+    }
+
+    private static boolean isSkipped(String className) {
+        for (String prefix : SKIPPED_PACKAGES) {
+            if (className.startsWith(prefix)) return true;
+        }
+        int nested = className.indexOf('$');
+        return SKIPPED_CLASSES.contains(nested < 0 ? className : className.substring(0, nested));
+    }
+
+    private static String name(Object object) {
+        String name = object.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Hook wrapping lifted operators while a profiler is started.
+     */
+    public static final class Hook extends RxJavaObservableExecutionHook {
+        @Override
+        public <T, R> Observable.Operator<? extends R, ? super T> onLift(Observable.Operator<? extends R, ? super T> lift) {
+            OperatorProfiler profiler = active;
+            if (profiler == null) return lift;
+            return profiler.<T, R>wrap(lift);
+        }
+    }
+
+    /**
+     * Operators of a pipeline, from upstream to downstream.
+     */
+    public static final class Pipeline {
+        private final String name;
+        private final Map<String, OperatorStats> operatorsByKey = new LinkedHashMap<>();
+
+        private Pipeline(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public List<OperatorStats> operators() {
+            List<OperatorStats> operators;
+            synchronized (operatorsByKey) {
+                operators = new ArrayList<>(operatorsByKey.values());
+            }
+            // Subscriptions go upstream, so operators are registered downstream first.
+            Collections.reverse(operators);
+            return operators;
+        }
+
+        private OperatorStats operator(Object operator, int depth) {
+            String key = depth + " " + operator.getClass().getName();
+            synchronized (operatorsByKey) {
+                OperatorStats stats = operatorsByKey.get(key);
+                if (stats == null) {
+                    stats = new OperatorStats(this, OperatorProfiler.name(operator));
+                    operatorsByKey.put(key, stats);
+                }
+                return stats;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + operators();
+        }
+    }
+
+    public static final class OperatorStats {
+        private final Pipeline pipeline;
+        private final String name;
+        private final AtomicLong onNextCount = new AtomicLong();
+        private final AtomicLong selfNanos = new AtomicLong();
+        // Read and written by the triggering thread only.
+        private long loggedOnNextCount;
+        private long loggedSelfNanos;
+
+        private OperatorStats(Pipeline pipeline, String name) {
+            this.pipeline = pipeline;
+            this.name = name;
+        }
+
+        /**
+         * @return class name of the operator.
+         */
+        public String name() {
+            return name;
+        }
+
+        public long onNextCount() {
+            return onNextCount.get();
+        }
+
+        /**
+         * @return time spent in {@code onNext} of the operator, minus the time spent downstream.
+         */
+        public long selfTime(TimeUnit unit) {
+            return unit.convert(selfNanos.get(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return MessageFormat.format("{0}: {1} onNext, {2}µs", name, onNextCount(), selfTime(TimeUnit.MICROSECONDS));
+        }
+    }
+
+    /**
+     * Subscriber of an operator, timing its {@code onNext} calls. It shares subscriptions and
+     * producer with the operator subscriber, so backpressure is unchanged.
+     */
+    private static final class ProfiledSubscriber<T> extends Subscriber<T> {
+        private final Subscriber<T> actual;
+        private final OperatorStats stats;
+        private final int depth;
+
+        @SuppressWarnings("unchecked")
+        ProfiledSubscriber(Subscriber<? super T> actual, OperatorStats stats, int depth) {
+            super(actual);
+            this.actual = (Subscriber<T>) actual;
+            this.stats = stats;
+            this.depth = depth;
+        }
+
+        @Override
+        public void onStart() {
+            actual.onStart();
+        }
+
+        @Override
+        public void onNext(T t) {
+            Frames frames = FRAMES.get();
+            frames.push();
+            long startTime = System.nanoTime();
+            try {
+                actual.onNext(t);
+            } finally {
+                long elapsed = System.nanoTime() - startTime;
+                stats.selfNanos.addAndGet(frames.pop(elapsed));
+                stats.onNextCount.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            actual.onCompleted();
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            actual.onError(e);
+        }
+    }
+
+    /**
+     * Nested {@code onNext} calls of a thread, collecting the time of downstream calls.
+     */
+    private static final class Frames {
+        private long[] childNanos = new long[16];
+        private int depth = -1;
+
+        void push() {
+            if (++depth == childNanos.length) {
+                long[] grown = new long[depth * 2];
+                System.arraycopy(childNanos, 0, grown, 0, depth);
+                childNanos = grown;
+            }
+            childNanos[depth] = 0;
+        }
+
+        /**
+         * @return self time of the popped call.
+         */
+        long pop(long elapsed) {
+            long self = elapsed - childNanos[depth--];
+            if (depth >= 0) childNanos[depth] += elapsed;
+            return self;
+        }
+    }
+}
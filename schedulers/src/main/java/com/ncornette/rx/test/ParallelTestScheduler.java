@@ -0,0 +1,183 @@
+package com.ncornette.rx.test;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.exceptions.Exceptions;
+import rx.functions.Action0;
+
+/**
+ * {@link MeteredTestScheduler} running due actions on a real thread pool.
+ * <p>
+ * Actions are still queued until triggered, then dispatched to the executor; triggers return once
+ * every dispatched action, and the due actions they scheduled, are done. Actions of the same worker
+ * run one at a time, in order, as RxJava expects.
+ */
+public class ParallelTestScheduler extends MeteredTestScheduler {
+
+    private final ExecutorService executor;
+    private final Map<Worker, Lane> lanes = new HashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> busyNanosByWorker = new ConcurrentHashMap<>();
+    private final Set<Long> workerThreadIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private int inFlight;
+    private Throwable error;
+
+    /**
+     * @param executor pool running the actions, shut down by the caller once done.
+     */
+    public ParallelTestScheduler(ExecutorService executor) {
+        if (executor == null) throw new IllegalArgumentException("[executor] expected not to be null");
+        this.executor = executor;
+    }
+
+    public ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * @return time spent running actions, summed over all pool threads.
+     */
+    public long busyNanos() {
+        long total = 0;
+        for (AtomicLong busyNanos : busyNanosByWorker.values()) {
+            total += busyNanos.get();
+        }
+        return total;
+    }
+
+    /**
+     * @return snapshot of the time spent running actions by each pool thread.
+     */
+    public Map<String, Long> busyNanosByWorker() {
+        Map<String, Long> snapshot = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : busyNanosByWorker.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return ids of the pool threads that ran actions so far.
+     */
+    public Collection<Long> workerThreadIds() {
+        return Collections.unmodifiableSet(workerThreadIds);
+    }
+
+    @Override
+    public void triggerActions() {
+        do {
+            super.triggerActions();
+            awaitIdle();
+        } while (nextActionNanos() <= nowNanos());
+    }
+
+    @Override
+    public void advanceTimeTo(long delayTime, TimeUnit unit) {
+        long targetNanos = unit.toNanos(delayTime);
+        long next = nextActionNanos();
+        while (next <= targetNanos) {
+            super.advanceTimeTo(next, TimeUnit.NANOSECONDS);
+            awaitIdle();
+            next = nextActionNanos();
+        }
+        super.advanceTimeTo(targetNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    protected void execute(Action0 action, Worker worker) {
+        synchronized (lanes) {
+            inFlight++;
+            Lane lane = lanes.get(worker);
+            if (lane == null) {
+                lane = new Lane(worker);
+                lanes.put(worker, lane);
+                lane.actions.add(action);
+                executor.execute(lane);
+            } else {
+                lane.actions.add(action);
+            }
+        }
+    }
+
+    private void awaitIdle() {
+        Throwable failure;
+        synchronized (lanes) {
+            while (inFlight > 0) {
+                try {
+                    lanes.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            failure = error;
+            error = null;
+        }
+        if (failure != null) {
+            throw Exceptions.propagate(failure);
+        }
+    }
+
+    private void addBusyNanos(long nanos) {
+        String name = Thread.currentThread().getName();
+        AtomicLong busyNanos = busyNanosByWorker.get(name);
+        if (busyNanos == null) {
+            AtomicLong created = new AtomicLong();
+            busyNanos = busyNanosByWorker.putIfAbsent(name, created);
+            if (busyNanos == null) busyNanos = created;
+        }
+        busyNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Pending actions of one worker, drained by a single pool thread at a time.
+     */
+    private final class Lane implements Runnable {
+
+        private final Worker worker;
+        private final Queue<Action0> actions = new ArrayDeque<>();
+
+        Lane(Worker worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        public void run() {
+            workerThreadIds.add(Thread.currentThread().getId());
+            while (true) {
+                Action0 action;
+                synchronized (lanes) {
+                    action = actions.poll();
+                    if (action == null) {
+                        lanes.remove(worker);
+                        return;
+                    }
+                }
+                long startTime = System.nanoTime();
+                try {
+                    if (!worker.isUnsubscribed()) {
+                        runTimed(action);
+                    }
+                } catch (Throwable e) {
+                    synchronized (lanes) {
+                        if (error == null) error = e;
+                    }
+                } finally {
+                    addBusyNanos(System.nanoTime() - startTime);
+                    synchronized (lanes) {
+                        if (--inFlight == 0) lanes.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
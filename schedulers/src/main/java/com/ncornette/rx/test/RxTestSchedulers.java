@@ -1,39 +1,93 @@
 package com.ncornette.rx.test;
 
+import java.io.Closeable;
 import java.io.PrintStream;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 
+import rx.Observable;
 import rx.Subscriber;
+import rx.functions.Action0;
 import rx.functions.Func0;
+import rx.functions.Func1;
 import rx.observers.TestSubscriber;
 import rx.schedulers.TestScheduler;
 
 /**
  * Created by nic on 11/07/16.
  */
-public class RxTestSchedulers {
+public class RxTestSchedulers implements Closeable {
 
-    private final TestScheduler foregroundScheduler;
-    private final TestScheduler backgroundScheduler;
+    public static final String FOREGROUND = "Main";
+    public static final String BACKGROUND = "Background";
+    public static final int MAX_FAST_FORWARD_STEPS = 100000;
+    public static final int MAX_IDLE_ROUNDS = 1000;
+
+    private final Map<String, Stage> stages;
+    private final List<String> stageNames;
+    private final Stage foreground;
+    private final Stage background;
     private final Func0<Integer> backgroundEventsCount;
     private final Logger logger;
+    private final Clock clock;
+    private final BackpressureMonitor backpressure;
+    private final OperatorProfiler operatorProfiler;
+    private final LeakDetector leakDetector;
+    private final StackSampler stackSampler;
+    private int replacedTestSubscribers;
 
-    private Subscriber<? super Object> delegateSubscriber;
-    private TestSubscriber<? super Object> testSubscriber;
+    private volatile Subscriber<? super Object> delegateSubscriber;
+    private volatile TestSubscriber<? super Object> testSubscriber;
+    private final LogSubscriber.Format logFormat;
+    private final Integer recentEvents;
 
     public RxTestSchedulers() {
         this(builder().build().newBuilder());
     }
 
     private RxTestSchedulers(Builder builder) {
-        foregroundScheduler = builder.foregroundScheduler;
-        backgroundScheduler = builder.backgroundScheduler;
         delegateSubscriber = builder.delegateSubscriber;
         backgroundEventsCount = builder.backgroundEventsCount;
         logger = builder.logger;
-        testSubscriber = TestSubscriber.create(new LogSubscriber<>(logger, delegateSubscriber));
+        clock = builder.clock;
+        backpressure = builder.backpressureMonitor;
+        operatorProfiler = builder.operatorProfiler;
+        leakDetector = builder.leakDetector;
+        stackSampler = builder.stackSampler;
+        logFormat = builder.logFormat;
+        recentEvents = builder.recentEvents;
+        testSubscriber = createTestSubscriber(delegateSubscriber);
+
+        // Background first and foreground last, so loops follow the pipeline order.
+        stages = new LinkedHashMap<>();
+        background = new Stage(BACKGROUND, builder.backgroundScheduler, new Func0<Integer>() {
+            @Override
+            public Integer call() {
+                return backgroundEventsCount();
+            }
+        }, builder.budgets.get(BACKGROUND));
+        stages.put(BACKGROUND, background);
+        for (Map.Entry<String, TestScheduler> entry : builder.schedulers.entrySet()) {
+            String name = entry.getKey();
+            stages.put(name, new Stage(name, entry.getValue(), builder.eventsCounts.get(name), builder.budgets.get(name)));
+        }
+        foreground = new Stage(FOREGROUND, builder.foregroundScheduler, new Func0<Integer>() {
+            @Override
+            public Integer call() {
+                return foregroundEventsCount();
+            }
+        }, builder.budgets.get(FOREGROUND));
+        stages.put(FOREGROUND, foreground);
+        stageNames = Collections.unmodifiableList(new ArrayList<>(stages.keySet()));
     }
 
     public static Builder builder() {
@@ -47,76 +101,187 @@ public class RxTestSchedulers {
     public static Builder newBuilder(RxTestSchedulers copy) {
         if (copy == null) return builder();
         Builder builder = new Builder();
-        builder.foregroundScheduler = copy.foregroundScheduler;
-        builder.backgroundScheduler = copy.backgroundScheduler;
+        builder.foregroundScheduler = copy.foreground.scheduler;
+        builder.backgroundScheduler = copy.background.scheduler;
+        for (Stage stage : copy.stages.values()) {
+            if (stage != copy.foreground && stage != copy.background) {
+                builder.schedulers.put(stage.name, stage.scheduler);
+                builder.eventsCounts.put(stage.name, stage.eventsCount);
+            }
+            if (stage.budget != null) {
+                builder.budgets.put(stage.name, stage.budget);
+            }
+        }
         builder.delegateSubscriber = copy.delegateSubscriber;
         builder.backgroundEventsCount = copy.backgroundEventsCount;
         builder.logger = copy.logger;
+        builder.logFormat = copy.logFormat;
+        builder.recentEvents = copy.recentEvents;
+        builder.clock = copy.clock;
+        builder.backpressureMonitor = copy.backpressure;
+        builder.operatorProfiler = copy.operatorProfiler;
+        builder.leakDetector = copy.leakDetector;
+        builder.stackSampler = copy.stackSampler;
         return builder;
     }
 
-    private void triggerBackgroundActions(String title) {
-        logger.d("┌┄┄┄┄┄┄┄┄┄┄");
-        if (title != null && !title.isEmpty()) {
-            logger.v("┆ " + title);
-            logger.v("├┄┄┄┄┄┄┄┄┄┄");
+    private void triggerActions(Stage stage, String title) {
+        stage.startBackpressure(backpressure);
+        if (stage == background && stackSampler != null) {
+            triggerSampled(stage, title);
+        } else {
+            triggerStage(stage, title);
         }
-        logger.i("┆  ");
-        long startTime = System.nanoTime();
-        testBackgroundScheduler().triggerActions();
-        long elapsed = System.nanoTime() - startTime;
-        testBackgroundScheduler().advanceTimeBy(elapsed, TimeUnit.NANOSECONDS);
-        logger.i("┆  ");
-        logger.i("┆ Background: ");
-        logger.i("┆  current: {0}ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
-        logger.i("┆  total  : {0}ms", testBackgroundScheduler().now());
-        logger.d("└┄┄┄┄┄┄┄┄┄┄");
+        stage.endBackpressure(backpressure);
     }
 
-    private void triggerForegroundActions(String title) {
-        logger.d("┏━━━━━━━━━━━━━━━━━━━━━━");
-        if (title != null && !title.isEmpty()) {
-            logger.v("┃ " + title);
-            logger.v("┣━━━━━━━━━━━━━━━━━━━━━━");
+    private void triggerSampled(final Stage stage, String title) {
+        final long callerId = Thread.currentThread().getId();
+        // Read at each sample: pool threads are known once they pick up their first action.
+        stackSampler.start(new Func0<Collection<Long>>() {
+            @Override
+            public Collection<Long> call() {
+                List<Long> threadIds = new ArrayList<>(stage.workerThreadIds());
+                threadIds.add(callerId);
+                return threadIds;
+            }
+        });
+        try {
+            triggerStage(stage, title);
+        } finally {
+            stackSampler.stop();
         }
-        logger.i("┃   ");
-        long startTime = System.nanoTime();
-        testForegroundScheduler().triggerActions();
-        long elapsed = System.nanoTime() - startTime;
-        testForegroundScheduler().advanceTimeBy(elapsed, TimeUnit.NANOSECONDS);
-        logger.i("┃   ");
-        logger.i("┃ Main: ");
-        logger.i("┃  current: {0}ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
-        logger.i("┃  total  : {0}ms", testForegroundScheduler().now());
-        logger.d("┗━━━━━━━━━━━━━━━━━━━━━━");
     }
 
-    public int triggerForegroundEvents(String s) throws OnErrorEventsException {
-        int beforeCount = foregroundEventsCount();
+    private void triggerStage(Stage stage, String title) {
+        if (stage == foreground) {
+            logger.d("┏━━━━━━━━━━━━━━━━━━━━━━");
+            if (title != null && !title.isEmpty()) {
+                logger.v("┃ " + title);
+                logger.v("┣━━━━━━━━━━━━━━━━━━━━━━");
+            }
+            logger.i("┃   ");
+            stage.trigger(clock);
+            logger.i("┃   ");
+            logStage("┃ ", stage);
+            logger.d("┗━━━━━━━━━━━━━━━━━━━━━━");
+        } else {
+            logger.d("┌┄┄┄┄┄┄┄┄┄┄");
+            if (title != null && !title.isEmpty()) {
+                logger.v("┆ " + title);
+                logger.v("├┄┄┄┄┄┄┄┄┄┄");
+            }
+            logger.i("┆  ");
+            stage.trigger(clock);
+            logger.i("┆  ");
+            logStage("┆ ", stage);
+            logger.d("└┄┄┄┄┄┄┄┄┄┄");
+        }
+    }
+
+    private void logStage(String border, Stage stage) {
+        if (!logger.isLoggable(Logger.Level.INFO)) return;
+        logger.i(border + "{0}: ", stage.name);
+        logger.i(border + " current: {0}ms", TimeUnit.NANOSECONDS.toMillis(stage.lastElapsedNanos));
+        logger.i(border + " total  : {0}ms", stage.scheduler.now());
+        if (!clock.isWall()) {
+            logger.i(border + " wall   : {0}ms / {1}ms", TimeUnit.NANOSECONDS.toMillis(stage.lastWallNanos),
+                    TimeUnit.NANOSECONDS.toMillis(stage.wallNanos));
+        }
+        if (stage.lastAllocatedBytes >= 0) {
+            logger.i(border + " alloc  : {0} bytes", stage.lastAllocatedBytes);
+        }
+        if (stage.lastGcCount > 0) {
+            logger.i(border + " gc     : {0} ({1}ms)", stage.lastGcCount, stage.lastGcMillis);
+        }
+        if (backpressure.emitted() > 0) {
+            logger.i(border + " queue  : peak {0}, high water {1}", backpressure.peak(), backpressure.highWater());
+        }
+        LatencyHistogram actionLatency = stage.actionLatency();
+        if (actionLatency != null) {
+            logger.d(border + " latency: {0}", actionLatency);
+        }
+        if (stage.scheduler instanceof ParallelTestScheduler) {
+            logger.i(border + " speedup: {0,number,0.00}x", stage.speedup());
+            if (logger.isLoggable(Logger.Level.VERBOSE)) {
+                for (Map.Entry<String, Double> entry : stage.utilization().entrySet()) {
+                    logger.v(border + "  {0}: {1,number,percent}", entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (stage == background && stackSampler != null) {
+            logger.d(border + " samples: {0}", stackSampler.samples());
+        }
+        if (leakDetector != null) {
+            // Without collecting garbage: unreachable subscribers and caches count until collected.
+            logger.i(border + " retained: {0}", leakDetector);
+        }
+        if (operatorProfiler != null) {
+            logger.i(border + " operators:");
+            operatorProfiler.log(logger, border);
+        }
+    }
+
+    /**
+     * Triggers due actions of the named scheduler.
+     *
+     * @return events, time, allocations and garbage collections of the trigger.
+     */
+    public TriggerResult trigger(String name, String title) throws OnErrorEventsException {
+        Stage stage = stage(name);
+        int beforeCount = stage.eventsCount();
         int beforeErrorCount = testSubscriber().getOnErrorEvents().size();
+        long beforeActions = stage.executedActions();
 
-        triggerForegroundActions(s);
+        triggerActions(stage, title);
 
         int afterErrorCount = testSubscriber().getOnErrorEvents().size();
         assertNoOnErrorEvents(beforeErrorCount, afterErrorCount);
-        int afterCount = foregroundEventsCount();
-        return afterCount - beforeCount;
+        int afterCount = stage.eventsCount();
+        TriggerResult result = new TriggerResult(stage, afterCount - beforeCount, stage.executedActions() - beforeActions);
+        assertWithinBudget(stage, result);
+        return result;
     }
 
-    public int triggerBackgroundRequests(String s) throws OnErrorEventsException {
-        int beforeCount = backgroundEventsCount();
-        int beforeErrorCount = testSubscriber().getOnErrorEvents().size();
+    private void assertWithinBudget(Stage stage, TriggerResult result) {
+        if (stage.budget == null) return;
+        List<String> violations = stage.budget.violations(result);
+        if (!violations.isEmpty()) {
+            BudgetExceededException exception = new BudgetExceededException(result, violations);
+            logger.e(exception.getMessage());
+            logger.flush();
+            throw exception;
+        }
+    }
 
-        triggerBackgroundActions(s);
+    public TriggerResult trigger(String name) throws OnErrorEventsException {
+        return trigger(name, "");
+    }
 
-        int afterErrorCount = testSubscriber().getOnErrorEvents().size();
-        assertNoOnErrorEvents(beforeErrorCount, afterErrorCount);
-        int afterCount = backgroundEventsCount();
-        return afterCount - beforeCount;
+    /**
+     * Triggers due actions of the named scheduler.
+     *
+     * @return the number of events counted for this scheduler during the trigger.
+     */
+    public int triggerEvents(String name, String title) throws OnErrorEventsException {
+        return trigger(name, title).events();
+    }
+
+    public int triggerEvents(String name) throws OnErrorEventsException {
+        return triggerEvents(name, "");
+    }
+
+    public int triggerForegroundEvents(String s) throws OnErrorEventsException {
+        return triggerEvents(FOREGROUND, s);
+    }
+
+    public int triggerBackgroundRequests(String s) throws OnErrorEventsException {
+        return triggerEvents(BACKGROUND, s);
     }
 
     private void assertNoOnErrorEvents(int beforeErrorCount, int afterErrorCount) throws OnErrorEventsException {
         if (afterErrorCount > beforeErrorCount) {
+            logger.flush();
             throw new OnErrorEventsException("Unexpected error event",
                     testSubscriber().getOnErrorEvents().get(beforeErrorCount));
         }
@@ -126,8 +291,16 @@ public class RxTestSchedulers {
         return backgroundEventsCount.call();
     }
 
+    /**
+     * @return events received by the test subscriber, saturated at {@link Integer#MAX_VALUE} for
+     * soak tests counting events only, see {@link CountingTestSubscriber#onNextCount()}.
+     */
     protected int foregroundEventsCount() {
-        return testSubscriber().getOnNextEvents().size();
+        TestSubscriber<? super Object> testSubscriber = testSubscriber();
+        if (testSubscriber instanceof CountingTestSubscriber) {
+            return (int) Math.min(Integer.MAX_VALUE, ((CountingTestSubscriber<?>) testSubscriber).onNextCount());
+        }
+        return testSubscriber.getOnNextEvents().size();
     }
 
     public int triggerBackgroundRequests() throws OnErrorEventsException {
@@ -156,12 +329,254 @@ public class RxTestSchedulers {
         return null;
     }
 
+    /**
+     * Triggers every scheduler in turn until none has a due action, so multi-hop pipelines
+     * run in one call. Delayed actions are left for {@link #fastForward()}.
+     *
+     * @return one step per round, stopped after {@link #MAX_IDLE_ROUNDS} rounds.
+     */
+    public Steps triggerUntilIdle() throws OnErrorEventsException {
+        return triggerUntilIdle(MAX_IDLE_ROUNDS);
+    }
+
+    public Steps triggerUntilIdle(int maxRounds) throws OnErrorEventsException {
+        List<MeteredTestScheduler> schedulers = meteredSchedulers();
+        int beforeErrorCount = testSubscriber().getOnErrorEvents().size();
+        int requests = backgroundEventsCount();
+        int events = foregroundEventsCount();
+
+        List<Step> rounds = new ArrayList<>();
+        boolean idle = false;
+        while (rounds.size() < maxRounds) {
+            if (!isDue(schedulers)) {
+                idle = true;
+                break;
+            }
+            long[] actions = executedActions(schedulers);
+            for (Stage stage : stages.values()) {
+                MeteredTestScheduler scheduler = metered(stage.scheduler);
+                if (scheduler.nextActionNanos() <= scheduler.nowNanos()) {
+                    stage.startBackpressure(backpressure);
+                    stage.advance(clock);
+                    stage.endBackpressure(backpressure);
+                }
+            }
+
+            int afterRequests = backgroundEventsCount();
+            int afterEvents = foregroundEventsCount();
+            rounds.add(new Step(metered(background.scheduler).nowNanos(), stageNames,
+                    executedActionsSince(schedulers, actions),
+                    afterRequests - requests,
+                    afterEvents - events));
+            requests = afterRequests;
+            events = afterEvents;
+            assertNoOnErrorEvents(beforeErrorCount, testSubscriber().getOnErrorEvents().size());
+        }
+
+        Steps result = new Steps(rounds, idle);
+        logger.d("┌┄┄┄┄┄┄┄┄┄┄");
+        logger.i("┆ Until idle: ");
+        logger.i("┆  rounds  : {0}{1}", rounds.size(), idle ? "" : " (not idle)");
+        logger.i("┆  requests: {0}", result.requests());
+        logger.i("┆  events  : {0}", result.events());
+        logger.i("┆  total   : {0}ms / {1}ms", testBackgroundScheduler().now(), testForegroundScheduler().now());
+        logger.d("└┄┄┄┄┄┄┄┄┄┄");
+        return result;
+    }
+
+    private static boolean isDue(List<MeteredTestScheduler> schedulers) {
+        for (MeteredTestScheduler scheduler : schedulers) {
+            if (scheduler.nextActionNanos() <= scheduler.nowNanos()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs pending actions of all schedulers until none is left, jumping virtual time directly
+     * to the next due action. Executed actions take no virtual time, except the time they charge,
+     * see {@link MeteredTestScheduler#charge(long, TimeUnit)}.
+     *
+     * @return the executed steps, stopped after {@link #MAX_FAST_FORWARD_STEPS} steps.
+     */
+    public Steps fastForward() throws OnErrorEventsException {
+        return fastForward(Long.MAX_VALUE, MAX_FAST_FORWARD_STEPS);
+    }
+
+    /**
+     * Runs pending actions of all schedulers due within the given virtual time, jumping virtual time
+     * directly to the next due action. All schedulers end at the deadline, or at the time charged
+     * by the last step past it.
+     *
+     * @return the executed steps.
+     */
+    public Steps fastForward(long time, TimeUnit unit) throws OnErrorEventsException {
+        long startNanos = 0;
+        for (MeteredTestScheduler scheduler : meteredSchedulers()) {
+            startNanos = Math.max(startNanos, scheduler.nowNanos());
+        }
+        long deadline = startNanos + unit.toNanos(time);
+        if (deadline < startNanos) deadline = Long.MAX_VALUE;
+        return fastForward(deadline, Integer.MAX_VALUE);
+    }
+
+    private Steps fastForward(long deadlineNanos, int maxSteps) throws OnErrorEventsException {
+        List<MeteredTestScheduler> schedulers = meteredSchedulers();
+        int beforeErrorCount = testSubscriber().getOnErrorEvents().size();
+
+        logger.d("┌┄┄┄┄┄┄┄┄┄┄");
+        logger.v("┆ Fast-forward");
+        logger.v("├┄┄┄┄┄┄┄┄┄┄");
+        List<Step> steps = new ArrayList<>();
+        boolean idle = false;
+        long startTime = System.nanoTime();
+        while (steps.size() < maxSteps) {
+            long next = Long.MAX_VALUE;
+            for (MeteredTestScheduler scheduler : schedulers) {
+                next = Math.min(next, scheduler.nextActionNanos());
+            }
+            if (next == Long.MAX_VALUE) {
+                idle = true;
+                break;
+            }
+            if (next > deadlineNanos) break;
+
+            long[] actions = executedActions(schedulers);
+            int requests = backgroundEventsCount();
+            int events = foregroundEventsCount();
+
+            takeChargedNanos(schedulers);
+            for (MeteredTestScheduler scheduler : schedulers) {
+                advanceTo(scheduler, next);
+            }
+            long charged = takeChargedNanos(schedulers);
+            if (charged > 0) {
+                for (MeteredTestScheduler scheduler : schedulers) {
+                    advanceTo(scheduler, next + charged);
+                }
+            }
+
+            Step step = new Step(next, stageNames,
+                    executedActionsSince(schedulers, actions),
+                    backgroundEventsCount() - requests,
+                    foregroundEventsCount() - events);
+            steps.add(step);
+            logger.v("┆  {0}ms: {1}", TimeUnit.NANOSECONDS.toMillis(next), step);
+            assertNoOnErrorEvents(beforeErrorCount, testSubscriber().getOnErrorEvents().size());
+        }
+        if (deadlineNanos != Long.MAX_VALUE) {
+            for (MeteredTestScheduler scheduler : schedulers) {
+                advanceTo(scheduler, deadlineNanos);
+            }
+            assertNoOnErrorEvents(beforeErrorCount, testSubscriber().getOnErrorEvents().size());
+        }
+        long wallElapsed = System.nanoTime() - startTime;
+
+        Steps result = new Steps(steps, idle);
+        logger.i("┆ Fast-forward: ");
+        logger.i("┆  steps  : {0}{1}", steps.size(), idle ? "" : " (not idle)");
+        for (String name : stageNames) {
+            logger.i("┆  {0}: {1} actions", name, result.actions(name));
+        }
+        logger.i("┆  total  : {0}ms", testBackgroundScheduler().now());
+        logger.i("┆  wall   : {0}ms", TimeUnit.NANOSECONDS.toMillis(wallElapsed));
+        logger.d("└┄┄┄┄┄┄┄┄┄┄");
+        return result;
+    }
+
+    private static long takeChargedNanos(List<MeteredTestScheduler> schedulers) {
+        long charged = 0;
+        for (MeteredTestScheduler scheduler : schedulers) {
+            charged = Math.max(charged, scheduler.takeChargedNanos());
+        }
+        return charged;
+    }
+
+    private static void advanceTo(MeteredTestScheduler scheduler, long nanos) {
+        if (scheduler.nowNanos() < nanos) {
+            scheduler.advanceTimeTo(nanos, TimeUnit.NANOSECONDS);
+        } else {
+            scheduler.triggerActions();
+        }
+    }
+
+    private List<MeteredTestScheduler> meteredSchedulers() {
+        List<MeteredTestScheduler> schedulers = new ArrayList<>(stages.size());
+        for (Stage stage : stages.values()) {
+            schedulers.add(metered(stage.scheduler));
+        }
+        return schedulers;
+    }
+
+    private static long[] executedActions(List<MeteredTestScheduler> schedulers) {
+        long[] actions = new long[schedulers.size()];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = schedulers.get(i).executedActions();
+        }
+        return actions;
+    }
+
+    private static long[] executedActionsSince(List<MeteredTestScheduler> schedulers, long[] actions) {
+        long[] executed = executedActions(schedulers);
+        for (int i = 0; i < executed.length; i++) {
+            executed[i] -= actions[i];
+        }
+        return executed;
+    }
+
+    /**
+     * Scheduling loops need the due and executed actions, which a plain {@link TestScheduler} doesn't tell.
+     */
+    private static MeteredTestScheduler metered(TestScheduler scheduler) {
+        if (!(scheduler instanceof MeteredTestScheduler)) {
+            throw new IllegalStateException("triggerUntilIdle() and fastForward() expect schedulers of type "
+                    + MeteredTestScheduler.class.getSimpleName());
+        }
+        return (MeteredTestScheduler) scheduler;
+    }
+
     public TestScheduler testForegroundScheduler() {
-        return foregroundScheduler;
+        return foreground.scheduler;
     }
 
     public TestScheduler testBackgroundScheduler() {
-        return backgroundScheduler;
+        return background.scheduler;
+    }
+
+    public TestScheduler testScheduler(String name) {
+        return stage(name).scheduler;
+    }
+
+    public Stage stage(String name) {
+        Stage stage = stages.get(name);
+        if (stage == null) throw new IllegalArgumentException("no scheduler named [" + name + "]");
+        return stage;
+    }
+
+    /**
+     * @return all schedulers, background first and foreground last.
+     */
+    public Collection<Stage> stages() {
+        return Collections.unmodifiableCollection(stages.values());
+    }
+
+    /**
+     * Logs triggers, executed actions, virtual and real time spent by each scheduler.
+     */
+    public void logSummary() {
+        logger.d("┌┄┄┄┄┄┄┄┄┄┄");
+        logger.i("┆ Schedulers: ");
+        for (Stage stage : stages.values()) {
+            logger.i("┆  {0}: {1} triggers, {2} actions, {3}ms, wall {4}ms", stage.name, stage.triggers,
+                    stage.executedActions(), stage.elapsedTime(TimeUnit.MILLISECONDS),
+                    stage.wallTime(TimeUnit.MILLISECONDS));
+            logger.i("┆   memory : {0} bytes allocated, {1} gc ({2}ms)",
+                    stage.allocatedBytes, stage.gcCount, stage.gcMillis);
+            if (stage.actionLatency() != null) {
+                logger.i("┆   latency: {0}", stage.actionLatency());
+                logger.d("┆   slowest: {0}", ((MeteredTestScheduler) stage.scheduler).slowestAction());
+            }
+        }
+        logger.d("└┄┄┄┄┄┄┄┄┄┄");
     }
 
     public TestSubscriber<? super Object> testSubscriber() {
@@ -173,41 +588,660 @@ public class RxTestSchedulers {
     }
 
     public TestSubscriber<? super Object> newTestSubscriber(Subscriber<Object> subscriber) {
+        TestSubscriber<? super Object> testSubscriber = createTestSubscriber(subscriber);
+        if (leakDetector != null) {
+            // Replaced without unsubscribing, it leaks if still subscribed to a reachable source.
+            leakDetector.track(this.testSubscriber, "replaced test subscriber #" + ++replacedTestSubscribers);
+        }
         delegateSubscriber = subscriber;
-        this.testSubscriber = TestSubscriber.create(LogSubscriber.create(logger, subscriber));
-        return this.testSubscriber;
+        this.testSubscriber = testSubscriber;
+        return testSubscriber;
+    }
+
+    /**
+     * Ends the test: unsubscribes the test subscriber and releases it, then fails if a
+     * {@link LeakDetector} is set and finds leaks, see {@link LeakDetector#assertNoLeaks()}. What is
+     * still retained is held by something else than the subscriber under test.
+     */
+    @Override
+    public void close() {
+        // No local reference, it would keep the closed subscriber reachable while asserting.
+        testSubscriber.unsubscribe();
+        testSubscriber = createTestSubscriber(delegateSubscriber);
+        if (leakDetector != null) {
+            leakDetector.assertNoLeaks();
+        }
+    }
+
+    private <T> TestSubscriber<T> createTestSubscriber(Subscriber<T> subscriber) {
+        Subscriber<T> logSubscriber = LogSubscriber.create(logger, subscriber, logFormat);
+        if (recentEvents != null) {
+            return CountingTestSubscriber.create(logSubscriber, recentEvents);
+        }
+        return TestSubscriber.create(logSubscriber);
     }
 
     public Logger logger() {
         return logger;
     }
 
+    public Clock clock() {
+        return clock;
+    }
+
+    /**
+     * @return queue depth and requests of the pipelines observing on {@link #observeOnForeground()}.
+     */
+    public BackpressureMonitor backpressure() {
+        return backpressure;
+    }
+
+    /**
+     * @return sampler of the background triggers, or null.
+     */
+    public StackSampler stackSampler() {
+        return stackSampler;
+    }
+
+    /**
+     * @return tracker of the test subscribers and caches, or null.
+     */
+    public LeakDetector leakDetector() {
+        return leakDetector;
+    }
+
+    /**
+     * @return profiler of the operators subscribed since this instance was built, or null.
+     */
+    public OperatorProfiler operatorProfiler() {
+        return operatorProfiler;
+    }
+
+    /**
+     * Observes on the foreground scheduler like {@link Observable#observeOn(rx.Scheduler)}, measuring
+     * the queue peak of each trigger, see {@link TriggerResult#queuePeak()}.
+     */
+    public <T> Observable.Transformer<T, T> observeOnForeground() {
+        return backpressure.observeOn(testForegroundScheduler());
+    }
+
+    /**
+     * Caches like {@link Observable#cache()}, tracking the cached values when a {@link LeakDetector}
+     * is set, see {@link LeakDetector#cache(String)}.
+     */
+    public <T> Observable.Transformer<T, T> cache(String name) {
+        if (leakDetector != null) return leakDetector.cache(name);
+        return new Observable.Transformer<T, T>() {
+            @Override
+            public Observable<T> call(Observable<T> observable) {
+                return observable.cache();
+            }
+        };
+    }
+
+    /**
+     * @return real time spent triggering foreground actions, whatever the {@link Clock}.
+     */
+    public long foregroundWallTime(TimeUnit unit) {
+        return foreground.wallTime(unit);
+    }
+
+    /**
+     * @return real time spent triggering background actions, whatever the {@link Clock}.
+     */
+    public long backgroundWallTime(TimeUnit unit) {
+        return background.wallTime(unit);
+    }
+
     public static class OnErrorEventsException extends Exception {
         public OnErrorEventsException(String message, Throwable cause) {
             super(message, cause);
         }
     }
 
+    /**
+     * Thrown by a trigger exceeding the {@link Budget} of its scheduler. It is an {@link AssertionError},
+     * so it fails tests without changing the trigger methods signatures.
+     */
+    public static class BudgetExceededException extends AssertionError {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TriggerResult result;
+        private final List<String> violations;
+
+        public BudgetExceededException(TriggerResult result, List<String> violations) {
+            super(message(result, violations));
+            this.result = result;
+            this.violations = Collections.unmodifiableList(new ArrayList<>(violations));
+        }
+
+        private static String message(TriggerResult result, List<String> violations) {
+            StringBuilder message = new StringBuilder("Budget exceeded by ").append(result.name()).append(" trigger:");
+            for (String violation : violations) {
+                message.append("\n - ").append(violation);
+            }
+            return message.append("\n").append(result).toString();
+        }
+
+        public TriggerResult result() {
+            return result;
+        }
+
+        public List<String> violations() {
+            return violations;
+        }
+    }
+
+    /**
+     * A named scheduler with its events counter, and the time its triggers took.
+     */
+    public static final class Stage {
+
+        private final String name;
+        private final TestScheduler scheduler;
+        private final Func0<Integer> eventsCount;
+        private final Budget budget;
+        private long triggers;
+        private long elapsedNanos;
+        private long wallNanos;
+        private long lastElapsedNanos;
+        private long lastWallNanos;
+        private Map<String, Long> lastBusyNanosByWorker = Collections.emptyMap();
+        private long allocatedBytes;
+        private long gcCount;
+        private long gcMillis;
+        private long lastAllocatedBytes = -1;
+        private long lastGcCount;
+        private long lastGcMillis;
+        private long lastQueuePeak;
+        private long lastRequested;
+        private long lastRequestCalls;
+        private long startRequested;
+        private long startRequestCalls;
+
+        Stage(String name, TestScheduler scheduler, Func0<Integer> eventsCount, Budget budget) {
+            this.name = name;
+            this.scheduler = scheduler;
+            this.eventsCount = eventsCount;
+            this.budget = budget;
+        }
+
+        /**
+         * Triggers due actions, then advances the scheduler according to the {@link Clock}.
+         */
+        void trigger(Clock clock) {
+            MemorySample startMemory = MemorySample.take(workerThreadIds());
+            Map<String, Long> startBusyNanos = busyNanosByWorker();
+            long startCost = actionCostNanos();
+            takeChargedNanos();
+            long startTime = System.nanoTime();
+            scheduler.triggerActions();
+            lastWallNanos = System.nanoTime() - startTime;
+            lastBusyNanosByWorker = busyNanosByWorker();
+            for (Map.Entry<String, Long> entry : startBusyNanos.entrySet()) {
+                Long busyNanos = lastBusyNanosByWorker.get(entry.getKey());
+                lastBusyNanosByWorker.put(entry.getKey(), busyNanos - entry.getValue());
+            }
+            lastElapsedNanos = clock.elapsed(lastWallNanos, actionCostNanos() - startCost) + takeChargedNanos();
+            scheduler.advanceTimeBy(lastElapsedNanos, TimeUnit.NANOSECONDS);
+            MemorySample endMemory = MemorySample.take(workerThreadIds());
+            lastAllocatedBytes = endMemory.allocatedBytesSince(startMemory);
+            lastGcCount = endMemory.gcCountSince(startMemory);
+            lastGcMillis = endMemory.gcMillisSince(startMemory);
+            triggers++;
+            elapsedNanos += lastElapsedNanos;
+            wallNanos += lastWallNanos;
+            allocatedBytes += Math.max(0, lastAllocatedBytes);
+            gcCount += lastGcCount;
+            gcMillis += lastGcMillis;
+        }
+
+        /**
+         * Triggers due actions and advances the scheduler like {@link #trigger(Clock)}, without
+         * measuring memory nor pool threads, for loops running many rounds.
+         */
+        void advance(Clock clock) {
+            long startCost = actionCostNanos();
+            takeChargedNanos();
+            long startTime = System.nanoTime();
+            scheduler.triggerActions();
+            lastWallNanos = System.nanoTime() - startTime;
+            lastElapsedNanos = clock.elapsed(lastWallNanos, actionCostNanos() - startCost) + takeChargedNanos();
+            scheduler.advanceTimeBy(lastElapsedNanos, TimeUnit.NANOSECONDS);
+            lastAllocatedBytes = -1;
+            lastGcCount = 0;
+            lastGcMillis = 0;
+            triggers++;
+            elapsedNanos += lastElapsedNanos;
+            wallNanos += lastWallNanos;
+        }
+
+        /**
+         * Resets the queue peak, before triggering.
+         */
+        void startBackpressure(BackpressureMonitor backpressure) {
+            backpressure.resetPeak();
+            startRequested = backpressure.requested();
+            startRequestCalls = backpressure.requestCalls();
+        }
+
+        /**
+         * Records the queue peak and requests of the trigger.
+         */
+        void endBackpressure(BackpressureMonitor backpressure) {
+            lastQueuePeak = backpressure.peak();
+            lastRequestCalls = backpressure.requestCalls() - startRequestCalls;
+            lastRequested = backpressure.requested() == Long.MAX_VALUE
+                    ? Long.MAX_VALUE : backpressure.requested() - startRequested;
+        }
+
+        private Collection<Long> workerThreadIds() {
+            if (scheduler instanceof ParallelTestScheduler) {
+                return ((ParallelTestScheduler) scheduler).workerThreadIds();
+            }
+            return Collections.emptyList();
+        }
+
+        private Map<String, Long> busyNanosByWorker() {
+            if (scheduler instanceof ParallelTestScheduler) {
+                return ((ParallelTestScheduler) scheduler).busyNanosByWorker();
+            }
+            return new HashMap<>();
+        }
+
+        private long actionCostNanos() {
+            if (scheduler instanceof MeteredTestScheduler) {
+                return ((MeteredTestScheduler) scheduler).actionCostNanos();
+            }
+            return 0;
+        }
+
+        private long takeChargedNanos() {
+            if (scheduler instanceof MeteredTestScheduler) {
+                return ((MeteredTestScheduler) scheduler).takeChargedNanos();
+            }
+            return 0;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public TestScheduler scheduler() {
+            return scheduler;
+        }
+
+        public int eventsCount() {
+            return eventsCount.call();
+        }
+
+        /**
+         * @return limits checked after each trigger, or null.
+         */
+        public Budget budget() {
+            return budget;
+        }
+
+        public long triggers() {
+            return triggers;
+        }
+
+        /**
+         * @return executed actions, or -1 if the scheduler is not a {@link MeteredTestScheduler}.
+         */
+        public long executedActions() {
+            if (scheduler instanceof MeteredTestScheduler) {
+                return ((MeteredTestScheduler) scheduler).executedActions();
+            }
+            return -1;
+        }
+
+        /**
+         * @return real time taken by each action, or null if the scheduler is not a {@link MeteredTestScheduler}.
+         */
+        public LatencyHistogram actionLatency() {
+            if (scheduler instanceof MeteredTestScheduler) {
+                return ((MeteredTestScheduler) scheduler).actionLatency();
+            }
+            return null;
+        }
+
+        /**
+         * @return virtual time the scheduler was advanced by its triggers.
+         */
+        public long elapsedTime(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return real time spent in triggers, whatever the {@link Clock}.
+         */
+        public long wallTime(TimeUnit unit) {
+            return unit.convert(wallNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return bytes allocated during triggers, by the triggering thread and the pool threads
+         * of a {@link ParallelTestScheduler}.
+         */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * @return garbage collections that happened during triggers, in any thread.
+         */
+        public long gcCount() {
+            return gcCount;
+        }
+
+        public long gcTime(TimeUnit unit) {
+            return unit.convert(gcMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @return time spent running actions during the last trigger, over its real time.
+         * Above 1 when a {@link ParallelTestScheduler} ran actions in parallel.
+         */
+        public double speedup() {
+            if (lastWallNanos == 0) return 0;
+            long busyNanos = 0;
+            for (Long workerBusyNanos : lastBusyNanosByWorker.values()) {
+                busyNanos += workerBusyNanos;
+            }
+            return (double) busyNanos / lastWallNanos;
+        }
+
+        /**
+         * @return share of the last trigger real time each pool thread spent running actions.
+         */
+        public Map<String, Double> utilization() {
+            Map<String, Double> utilization = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> entry : lastBusyNanosByWorker.entrySet()) {
+                utilization.put(entry.getKey(), lastWallNanos == 0 ? 0 : (double) entry.getValue() / lastWallNanos);
+            }
+            return utilization;
+        }
+    }
+
+    /**
+     * Events, actions, time, allocations and garbage collections of one trigger.
+     */
+    public static final class TriggerResult {
+
+        private final String name;
+        private final int events;
+        private final long actions;
+        private final long elapsedNanos;
+        private final long wallNanos;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+        private final long queuePeak;
+        private final long requested;
+        private final long requestCalls;
+
+        TriggerResult(Stage stage, int events, long actions) {
+            this.name = stage.name;
+            this.events = events;
+            this.actions = actions;
+            this.elapsedNanos = stage.lastElapsedNanos;
+            this.wallNanos = stage.lastWallNanos;
+            this.allocatedBytes = stage.lastAllocatedBytes;
+            this.gcCount = stage.lastGcCount;
+            this.gcMillis = stage.lastGcMillis;
+            this.queuePeak = stage.lastQueuePeak;
+            this.requested = stage.lastRequested;
+            this.requestCalls = stage.lastRequestCalls;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public int events() {
+            return events;
+        }
+
+        /**
+         * @return executed actions, or 0 if the scheduler is not a {@link MeteredTestScheduler}.
+         */
+        public long actions() {
+            return actions;
+        }
+
+        /**
+         * @return virtual time the scheduler was advanced by.
+         */
+        public long elapsedTime(TimeUnit unit) {
+            return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long wallTime(TimeUnit unit) {
+            return unit.convert(wallNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return bytes allocated by the triggering thread and pool threads, or -1 if the JVM can't tell.
+         */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long gcCount() {
+            return gcCount;
+        }
+
+        public long gcTime(TimeUnit unit) {
+            return unit.convert(gcMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * @return maximum items queued by {@link RxTestSchedulers#observeOnForeground()} during the trigger.
+         */
+        public long queuePeak() {
+            return queuePeak;
+        }
+
+        /**
+         * @return items requested upstream of {@link RxTestSchedulers#observeOnForeground()} during
+         * the trigger, {@link Long#MAX_VALUE} when unbounded.
+         */
+        public long requested() {
+            return requested;
+        }
+
+        public long requestCalls() {
+            return requestCalls;
+        }
+
+        @Override
+        public String toString() {
+            return MessageFormat.format("{0}: {1} events, {2} actions, {3}ms, wall {4}ms, {5} bytes, {6} gc ({7}ms), "
+                            + "queue peak {8}, requested {9} in {10} calls",
+                    name, events, actions, elapsedTime(TimeUnit.MILLISECONDS), wallTime(TimeUnit.MILLISECONDS),
+                    allocatedBytes, gcCount, gcMillis, queuePeak, requested, requestCalls);
+        }
+    }
+
+    /**
+     * Actions executed and events counted in one step of a scheduling loop.
+     */
+    public static final class Step {
+
+        private final long timeNanos;
+        private final List<String> names;
+        private final long[] actions;
+        private final int requests;
+        private final int events;
+
+        Step(long timeNanos, List<String> names, long[] actions, int requests, int events) {
+            this.timeNanos = timeNanos;
+            this.names = names;
+            this.actions = actions;
+            this.requests = requests;
+            this.events = events;
+        }
+
+        public long time(TimeUnit unit) {
+            return unit.convert(timeNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long actions(String name) {
+            int index = names.indexOf(name);
+            if (index < 0) throw new IllegalArgumentException("no scheduler named [" + name + "]");
+            return actions[index];
+        }
+
+        public long backgroundActions() {
+            return actions(BACKGROUND);
+        }
+
+        public long foregroundActions() {
+            return actions(FOREGROUND);
+        }
+
+        public int requests() {
+            return requests;
+        }
+
+        public int events() {
+            return events;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < actions.length; i++) {
+                builder.append(names.get(i)).append(' ').append(actions[i]).append(", ");
+            }
+            return builder.append("requests ").append(requests).append(", events ").append(events).toString();
+        }
+    }
+
+    /**
+     * Steps executed by a scheduling loop, with their totals.
+     */
+    public static final class Steps {
+
+        private final List<Step> steps;
+        private final boolean idle;
+
+        Steps(List<Step> steps, boolean idle) {
+            this.steps = Collections.unmodifiableList(steps);
+            this.idle = idle;
+        }
+
+        public List<Step> steps() {
+            return steps;
+        }
+
+        /**
+         * @return true if the loop stopped because no action was left.
+         */
+        public boolean isIdle() {
+            return idle;
+        }
+
+        public long actions(String name) {
+            long total = 0;
+            for (Step step : steps) total += step.actions(name);
+            return total;
+        }
+
+        public long backgroundActions() {
+            return actions(BACKGROUND);
+        }
+
+        public long foregroundActions() {
+            return actions(FOREGROUND);
+        }
+
+        public int requests() {
+            int total = 0;
+            for (Step step : steps) total += step.requests;
+            return total;
+        }
+
+        public int events() {
+            int total = 0;
+            for (Step step : steps) total += step.events;
+            return total;
+        }
+    }
+
     public static final class Builder {
         private TestScheduler foregroundScheduler;
         private TestScheduler backgroundScheduler;
         private Func0<Integer> backgroundEventsCount;
+        private final Map<String, TestScheduler> schedulers = new LinkedHashMap<>();
+        private final Map<String, Func0<Integer>> eventsCounts = new LinkedHashMap<>();
+        private final Map<String, Budget> budgets = new HashMap<>();
         private Subscriber<? super Object> delegateSubscriber;
         private Logger logger;
+        private LogSubscriber.Format logFormat;
+        private Integer recentEvents;
+        private Clock clock;
+        private BackpressureMonitor backpressureMonitor;
+        private OperatorProfiler operatorProfiler;
+        private LeakDetector leakDetector;
+        private StackSampler stackSampler;
 
         private Builder() {
         }
 
+        /**
+         * @param val scheduler, a {@link MeteredTestScheduler} for {@link RxTestSchedulers#triggerUntilIdle()},
+         *            {@link RxTestSchedulers#fastForward()}, cost clocks and action metrics.
+         */
         public Builder foregroundScheduler(TestScheduler val) {
             foregroundScheduler = val;
             return this;
         }
 
+        /**
+         * @param val scheduler, a {@link MeteredTestScheduler} for {@link RxTestSchedulers#triggerUntilIdle()},
+         *            {@link RxTestSchedulers#fastForward()}, cost clocks and action metrics.
+         */
         public Builder backgroundScheduler(TestScheduler val) {
             backgroundScheduler = val;
             return this;
         }
 
+        /**
+         * Runs background actions on the given executor, see {@link ParallelTestScheduler}.
+         */
+        public Builder parallelBackground(ExecutorService val) {
+            backgroundScheduler = new ParallelTestScheduler(val);
+            return this;
+        }
+
+        /**
+         * Registers a named scheduler, triggered with {@link RxTestSchedulers#triggerEvents(String)}.
+         * {@link #FOREGROUND} events are always counted by the test subscriber.
+         *
+         * @param eventsCount counts events of this scheduler, or null to count its executed actions.
+         */
+        public Builder scheduler(String name, TestScheduler scheduler, Func0<Integer> eventsCount) {
+            if (name == null) throw new IllegalArgumentException("[name] expected not to be null");
+            if (scheduler == null) throw new IllegalArgumentException("[scheduler] expected not to be null");
+            if (FOREGROUND.equals(name)) {
+                foregroundScheduler = scheduler;
+            } else if (BACKGROUND.equals(name)) {
+                backgroundScheduler = scheduler;
+                if (eventsCount != null) backgroundEventsCount = eventsCount;
+            } else {
+                schedulers.put(name, scheduler);
+                eventsCounts.put(name, eventsCount);
+            }
+            return this;
+        }
+
+        public Builder scheduler(String name, TestScheduler scheduler) {
+            return scheduler(name, scheduler, null);
+        }
+
         public Builder subscriber(Subscriber<Object> val) {
             delegateSubscriber = val;
             return this;
@@ -218,30 +1252,212 @@ public class RxTestSchedulers {
             return this;
         }
 
+        /**
+         * @param val how events of the test subscriber are logged, {@link LogSubscriber.Format#FULL} by default.
+         */
+        public Builder logFormat(LogSubscriber.Format val) {
+            logFormat = val;
+            return this;
+        }
+
+        /**
+         * Test subscribers only count {@code onNext} events, keeping the last ones for diagnostics.
+         *
+         * @param val number of recent events kept, see {@link CountingTestSubscriber}.
+         */
+        public Builder countEventsOnly(int val) {
+            if (val < 0) throw new IllegalArgumentException("[recentEvents] expected not to be negative");
+            recentEvents = val;
+            return this;
+        }
+
         public Builder backgroundEventsCount(Func0<Integer> val) {
             backgroundEventsCount = val;
             return this;
         }
 
+        public Builder clock(Clock val) {
+            clock = val;
+            return this;
+        }
+
+        /**
+         * Samples the stacks of the threads running background actions during background triggers.
+         * Write collapsed stacks for each test with {@link StackSampler#rule(java.io.File)}.
+         *
+         * @param val sampler, or null to sample nothing.
+         */
+        public Builder stackSampler(StackSampler val) {
+            stackSampler = val;
+            return this;
+        }
+
+        /**
+         * Tracks test subscribers replaced by {@link RxTestSchedulers#newTestSubscriber()}, and logs retained subscriptions and cached values
+         * after each trigger, without collecting garbage. {@link RxTestSchedulers#close()} asserts no leaks at the end of tests.
+         *
+         * @param val detector, also tracking caches created with {@link RxTestSchedulers#cache(String)}.
+         */
+        public Builder leakDetector(LeakDetector val) {
+            leakDetector = val;
+            return this;
+        }
+
+        /**
+         * Logs events and self time of each operator after each trigger. The profiler is started
+         * when built, stop it at the end of the test with {@link OperatorProfiler#rule()}, see
+         * {@link OperatorProfiler} for its registration.
+         *
+         * @param val profiler, or null to log no operators.
+         */
+        public Builder operatorProfiler(OperatorProfiler val) {
+            operatorProfiler = val;
+            return this;
+        }
+
+        /**
+         * @param val monitor of {@link RxTestSchedulers#observeOnForeground()}, to share it between instances.
+         */
+        public Builder backpressureMonitor(BackpressureMonitor val) {
+            backpressureMonitor = val;
+            return this;
+        }
+
+        /**
+         * Checks each trigger of the named scheduler against the budget.
+         *
+         * @param val limits, or null to remove the budget.
+         */
+        public Builder budget(String name, Budget val) {
+            if (name == null) throw new IllegalArgumentException("[name] expected not to be null");
+            budgets.put(name, val);
+            return this;
+        }
+
+        public Builder backgroundBudget(Budget val) {
+            return budget(BACKGROUND, val);
+        }
+
+        public Builder foregroundBudget(Budget val) {
+            return budget(FOREGROUND, val);
+        }
+
         public RxTestSchedulers build() {
             if (backgroundEventsCount == null) {
                 throw new IllegalArgumentException("attribute [backgroundEventsCount] expected not to be null.");
             }
 
             if (foregroundScheduler == null) {
-                foregroundScheduler = new TestScheduler();
+                foregroundScheduler = new MeteredTestScheduler();
             }
 
             if (backgroundScheduler == null) {
-                backgroundScheduler = new TestScheduler();
+                backgroundScheduler = new MeteredTestScheduler();
+            }
+
+            for (Map.Entry<String, TestScheduler> entry : schedulers.entrySet()) {
+                if (eventsCounts.get(entry.getKey()) == null) {
+                    eventsCounts.put(entry.getKey(), executedActionsCount(entry.getKey(), entry.getValue()));
+                }
             }
 
             if (logger == null) {
                 logger = new Logger();
             }
 
+            if (logFormat == null) {
+                logFormat = LogSubscriber.Format.FULL;
+            }
+
+            if (clock == null) {
+                clock = Clock.wall();
+            }
+
+            if (backpressureMonitor == null) {
+                backpressureMonitor = new BackpressureMonitor();
+            }
+
+            if (operatorProfiler != null) {
+                operatorProfiler.start();
+            }
+
+            clock.apply(foregroundScheduler);
+            clock.apply(backgroundScheduler);
+            for (TestScheduler scheduler : schedulers.values()) {
+                clock.apply(scheduler);
+            }
+
             return new RxTestSchedulers(this);
         }
+
+        private static Func0<Integer> executedActionsCount(String name, TestScheduler scheduler) {
+            if (!(scheduler instanceof MeteredTestScheduler)) {
+                throw new IllegalArgumentException("attribute [eventsCount] of scheduler [" + name + "] expected not to be null.");
+            }
+            final MeteredTestScheduler meteredScheduler = (MeteredTestScheduler) scheduler;
+            return new Func0<Integer>() {
+                @Override
+                public Integer call() {
+                    return (int) meteredScheduler.executedActions();
+                }
+            };
+        }
+    }
+
+
+    /**
+     * Decides how much virtual time the schedulers are advanced by after each trigger.
+     * <p>
+     * The {@link #wall()} clock advances by the measured real time, so timers depend on machine load.
+     * Cost clocks charge a virtual cost for each executed action instead, so virtual time is
+     * reproducible while real time is still measured and reported separately.
+     */
+    public static final class Clock {
+
+        private final Func1<? super Action0, Long> actionCost;
+
+        private Clock(Func1<? super Action0, Long> actionCost) {
+            this.actionCost = actionCost;
+        }
+
+        public static Clock wall() {
+            return new Clock(null);
+        }
+
+        public static Clock fixedCost(long cost, TimeUnit unit) {
+            final long costNanos = unit.toNanos(cost);
+            return actionCost(new Func1<Action0, Long>() {
+                @Override
+                public Long call(Action0 action) {
+                    return costNanos;
+                }
+            });
+        }
+
+        /**
+         * @param nanosPerAction virtual nanoseconds charged for each executed action.
+         */
+        public static Clock actionCost(Func1<? super Action0, Long> nanosPerAction) {
+            if (nanosPerAction == null) throw new IllegalArgumentException("[nanosPerAction] expected not to be null");
+            return new Clock(nanosPerAction);
+        }
+
+        public boolean isWall() {
+            return actionCost == null;
+        }
+
+        long elapsed(long wallNanos, long costNanos) {
+            return isWall() ? wallNanos : costNanos;
+        }
+
+        void apply(TestScheduler scheduler) {
+            if (scheduler instanceof MeteredTestScheduler) {
+                ((MeteredTestScheduler) scheduler).actionCost(actionCost);
+            } else if (!isWall()) {
+                throw new IllegalArgumentException("attribute [clock] expects schedulers of type "
+                        + MeteredTestScheduler.class.getSimpleName());
+            }
+        }
     }
 
     /**
@@ -269,50 +1485,92 @@ public class RxTestSchedulers {
         }
 
         public void v(String s) {
-            log(Level.VERBOSE, s);
+            if (isLoggable(Level.VERBOSE)) write(Level.VERBOSE, s);
+        }
+        public void v(String s, Object o0) {
+            if (isLoggable(Level.VERBOSE)) write(Level.VERBOSE, MessageFormat.format(s, o0));
+        }
+        public void v(String s, Object o0, Object o1) {
+            if (isLoggable(Level.VERBOSE)) write(Level.VERBOSE, MessageFormat.format(s, o0, o1));
+        }
+        public void v(String s, Object o0, Object o1, Object o2) {
+            if (isLoggable(Level.VERBOSE)) write(Level.VERBOSE, MessageFormat.format(s, o0, o1, o2));
         }
         public void v(String s, Object... o) {
-            log(Level.VERBOSE, s, o);
+            if (isLoggable(Level.VERBOSE)) write(Level.VERBOSE, MessageFormat.format(s, o));
         }
         public void d(String s) {
-            log(Level.DEBUG, s);
+            if (isLoggable(Level.DEBUG)) write(Level.DEBUG, s);
+        }
+        public void d(String s, Object o0) {
+            if (isLoggable(Level.DEBUG)) write(Level.DEBUG, MessageFormat.format(s, o0));
+        }
+        public void d(String s, Object o0, Object o1) {
+            if (isLoggable(Level.DEBUG)) write(Level.DEBUG, MessageFormat.format(s, o0, o1));
+        }
+        public void d(String s, Object o0, Object o1, Object o2) {
+            if (isLoggable(Level.DEBUG)) write(Level.DEBUG, MessageFormat.format(s, o0, o1, o2));
         }
         public void d(String s, Object... o) {
-            log(Level.DEBUG, s, o);
+            if (isLoggable(Level.DEBUG)) write(Level.DEBUG, MessageFormat.format(s, o));
         }
         public void i(String s) {
-            log(Level.INFO, s);
+            if (isLoggable(Level.INFO)) write(Level.INFO, s);
+        }
+        public void i(String s, Object o0) {
+            if (isLoggable(Level.INFO)) write(Level.INFO, MessageFormat.format(s, o0));
+        }
+        public void i(String s, Object o0, Object o1) {
+            if (isLoggable(Level.INFO)) write(Level.INFO, MessageFormat.format(s, o0, o1));
+        }
+        public void i(String s, Object o0, Object o1, Object o2) {
+            if (isLoggable(Level.INFO)) write(Level.INFO, MessageFormat.format(s, o0, o1, o2));
         }
         public void i(String s, Object... o) {
-            log(Level.INFO, s, o);
+            if (isLoggable(Level.INFO)) write(Level.INFO, MessageFormat.format(s, o));
         }
         public void e(String s) {
-            log(Level.ERROR, s);
+            if (isLoggable(Level.ERROR)) write(Level.ERROR, s);
+        }
+        public void e(String s, Object o0) {
+            if (isLoggable(Level.ERROR)) write(Level.ERROR, MessageFormat.format(s, o0));
+        }
+        public void e(String s, Object o0, Object o1) {
+            if (isLoggable(Level.ERROR)) write(Level.ERROR, MessageFormat.format(s, o0, o1));
+        }
+        public void e(String s, Object o0, Object o1, Object o2) {
+            if (isLoggable(Level.ERROR)) write(Level.ERROR, MessageFormat.format(s, o0, o1, o2));
         }
         public void e(String s, Object... o) {
-            log(Level.ERROR, s, o);
+            if (isLoggable(Level.ERROR)) write(Level.ERROR, MessageFormat.format(s, o));
         }
 
-        private void log(Level level, String s) {
-            if(currentLevelValue >= level.value) {
-                if (level.value > Level.ERROR.value) {
-                    out.println(s);
-                } else {
-                    err.println(s);
-                }
-            }
+        /**
+         * Guards expensive arguments, the overloads above only format lines of enabled levels.
+         */
+        public boolean isLoggable(Level level) {
+            return currentLevelValue >= level.value;
         }
 
-        private void log(Level level, String s, Object... o) {
-            if(currentLevelValue >= level.value) {
-                if (level.value > Level.ERROR.value) {
-                    out.println(MessageFormat.format(s, o));
-                } else {
-                    err.println(MessageFormat.format(s, o));
-                }
+        /**
+         * Prints a formatted line, errors to {@code System.err}.
+         */
+        protected void write(Level level, String line) {
+            if (level.value > Level.ERROR.value) {
+                out.println(line);
+            } else {
+                err.println(line);
             }
         }
 
+        /**
+         * Blocks until every line logged so far is printed. Called before failing a trigger.
+         */
+        public void flush() {
+            out.flush();
+            err.flush();
+        }
+
         public void level(Level currentLevel) {
             this.currentLevelValue = currentLevel.value;
         }
@@ -333,6 +1591,13 @@ public class RxTestSchedulers {
             return new RxTestSchedulers.Logger(Level.VERBOSE);
         }
 
+        /**
+         * @return a logger printing lines from a background thread, see {@link AsyncLogger}.
+         */
+        public static AsyncLogger async(Level level) {
+            return new AsyncLogger(level, System.out, AsyncLogger.DEFAULT_CAPACITY);
+        }
+
         public enum Level {
             ERROR(0),
             INFO(1),
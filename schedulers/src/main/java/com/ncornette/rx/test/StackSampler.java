@@ -0,0 +1,209 @@
+package com.ncornette.rx.test;
+
+import org.junit.rules.TestRule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import rx.functions.Func0;
+import rx.schedulers.TestScheduler;
+
+/**
+ * Samples the stacks of the threads running scheduler actions from a daemon thread, and counts
+ * them as collapsed stacks, the text format of flame graph tools: one line per distinct stack,
+ * frames from the root separated by {@code ;}, then the number of samples.
+ * <p>
+ * Stacks are kept from the outermost {@link TestScheduler} frame, samples out of actions are
+ * dropped. {@link RxTestSchedulers} samples its background triggers, see
+ * {@link RxTestSchedulers.Builder#stackSampler(StackSampler)}.
+ * <p>
+ * Samplers share one daemon sampling thread, so none needs to be shut down.
+ */
+public final class StackSampler {
+
+    private static final String FILE_EXTENSION = ".collapsed";
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, StackSampler.class.getSimpleName());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final long intervalNanos;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Map<String, Long> stacks = new TreeMap<>();
+    private ScheduledFuture<?> sampling;
+    private long samples;
+
+    public StackSampler(long interval, TimeUnit unit) {
+        if (interval <= 0) throw new IllegalArgumentException("[interval] expected to be positive");
+        intervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * Samples the given threads until {@link #stop()}.
+     */
+    public void start(final Collection<Long> threadIds) {
+        start(new Func0<Collection<Long>>() {
+            @Override
+            public Collection<Long> call() {
+                return threadIds;
+            }
+        });
+    }
+
+    /**
+     * Samples the threads returned at each sample until {@link #stop()}, so threads started by a
+     * pool meanwhile are sampled too.
+     */
+    public synchronized void start(final Func0<? extends Collection<Long>> threadIds) {
+        if (sampling != null) throw new IllegalStateException("already sampling");
+        sampling = EXECUTOR.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample(threadIds.call());
+            }
+        }, 0, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized void stop() {
+        if (sampling == null) return;
+        sampling.cancel(false);
+        sampling = null;
+    }
+
+    private void sample(Collection<Long> threadIds) {
+        List<Long> snapshot = new ArrayList<>(threadIds);
+        long[] ids = new long[snapshot.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = snapshot.get(i);
+        for (ThreadInfo info : threads.getThreadInfo(ids, Integer.MAX_VALUE)) {
+            if (info == null) continue;
+            String stack = collapse(info.getStackTrace());
+            if (stack == null) continue;
+            synchronized (stacks) {
+                Long count = stacks.get(stack);
+                stacks.put(stack, count == null ? 1 : count + 1);
+                samples++;
+            }
+        }
+    }
+
+    /**
+     * @return frames from the outermost scheduler frame to the top, or null out of actions.
+     */
+    private static String collapse(StackTraceElement[] frames) {
+        int root = -1;
+        for (int i = frames.length - 1; i >= 0 && root < 0; i--) {
+            if (isScheduler(frames[i].getClassName())) root = i;
+        }
+        if (root < 0 || root == 0) return null;
+        StringBuilder stack = new StringBuilder();
+        for (int i = root; i >= 0; i--) {
+            if (i != root) stack.append(';');
+            stack.append(frames[i].getClassName()).append('.').append(frames[i].getMethodName());
+        }
+        return stack.toString();
+    }
+
+    private static boolean isScheduler(String className) {
+        return className.equals(TestScheduler.class.getName())
+                || className.startsWith(MeteredTestScheduler.class.getName())
+                || className.startsWith(ParallelTestScheduler.class.getName());
+    }
+
+    /**
+     * @return samples taken in actions.
+     */
+    public long samples() {
+        synchronized (stacks) {
+            return samples;
+        }
+    }
+
+    /**
+     * @return samples by collapsed stack.
+     */
+    public Map<String, Long> stacks() {
+        synchronized (stacks) {
+            return new TreeMap<>(stacks);
+        }
+    }
+
+    public void reset() {
+        synchronized (stacks) {
+            stacks.clear();
+            samples = 0;
+        }
+    }
+
+    public void writeCollapsed(Writer writer) throws IOException {
+        for (Map.Entry<String, Long> entry : stacks().entrySet()) {
+            writer.write(entry.getKey());
+            writer.write(' ');
+            writer.write(Long.toString(entry.getValue()));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public void writeTo(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can't create directory " + directory);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writeCollapsed(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Resets samples before each test, and writes them after it as {@code Class.method.collapsed}
+     * in the directory, when any was taken.
+     */
+    public TestRule rule(final File directory) {
+        return new TestWatcher() {
+            @Override
+            protected void starting(Description description) {
+                reset();
+            }
+
+            @Override
+            protected void finished(Description description) {
+                stop();
+                if (samples() == 0) return;
+                File file = new File(directory, description.getClassName() + "." + description.getMethodName()
+                        + FILE_EXTENSION);
+                try {
+                    writeTo(file);
+                } catch (IOException e) {
+                    throw new IllegalStateException("can't write samples to " + file, e);
+                }
+            }
+        };
+    }
+}
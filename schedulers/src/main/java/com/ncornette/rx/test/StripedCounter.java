@@ -0,0 +1,64 @@
+package com.ncornette.rx.test;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free counter for values incremented by many threads at once.
+ * <p>
+ * Each thread adds to one of several cells, spread over separate cache lines, so concurrent
+ * increments rarely contend; {@link #get()} sums the cells.
+ */
+public final class StripedCounter {
+
+    /**
+     * Longs per cell, so that two cells never share a 64 bytes cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    public StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedCounter(int concurrency) {
+        if (concurrency < 1) throw new IllegalArgumentException("[concurrency] expected to be positive");
+        int stripes = Integer.highestOneBit(concurrency * 2 - 1) << 1;
+        cells = new AtomicLongArray(stripes * PADDING);
+        mask = stripes - 1;
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        cells.getAndAdd(cell(), delta);
+    }
+
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            cells.set(i, 0);
+        }
+    }
+
+    private int cell() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & mask) * PADDING;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
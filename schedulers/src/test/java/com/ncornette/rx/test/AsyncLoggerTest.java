@@ -0,0 +1,81 @@
+package com.ncornette.rx.test;
+
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncLoggerTest {
+
+    @Test
+    public void flushPrintsLinesInOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        AsyncLogger logger = new AsyncLogger(Logger.Level.DEBUG,
+                new PrintStream(out, true), new PrintStream(err, true), 2);
+
+        for (int i = 0; i < 100; i++) {
+            logger.i("line {0}", i);
+        }
+        logger.e("failed");
+        logger.flush();
+
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertThat(lines).hasSize(100);
+        assertThat(lines[0]).isEqualTo("line 0");
+        assertThat(lines[99]).isEqualTo("line 99");
+        assertThat(err.toString().trim()).isEqualTo("failed");
+        logger.close();
+    }
+
+    @Test
+    public void disabledLevelsAreNotFormatted() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogger logger = new AsyncLogger(Logger.Level.INFO, new PrintStream(out, true), 16);
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("formatted");
+            }
+        };
+
+        logger.d("{0}", argument);
+        logger.v("{0} {1}", argument, argument);
+        logger.close();
+
+        assertThat(logger.isLoggable(Logger.Level.DEBUG)).isFalse();
+        assertThat(out.toString()).isEmpty();
+    }
+
+    @Test
+    public void closedLoggerPrintsDirectly() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogger logger = new AsyncLogger(Logger.Level.INFO, new PrintStream(out, true), 16);
+        logger.close();
+
+        logger.i("after close");
+
+        assertThat(out.toString().trim()).isEqualTo("after close");
+    }
+
+    @Test
+    public void loggersShareOneWriterThread() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++) {
+            AsyncLogger logger = new AsyncLogger(Logger.Level.INFO, new PrintStream(out, true), 16);
+            logger.i("logger {0}", i);
+            logger.flush();
+        }
+
+        int writers = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("AsyncLogger")) writers++;
+        }
+        assertThat(writers).isEqualTo(1);
+        assertThat(out.toString().split(System.lineSeparator())).hasSize(10);
+    }
+}
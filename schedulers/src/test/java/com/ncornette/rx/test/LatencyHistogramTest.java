@@ -0,0 +1,44 @@
+package com.ncornette.rx.test;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesWithinBucketPrecision() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertThat(histogram.count()).isEqualTo(1000);
+        assertThat(histogram.max(TimeUnit.MICROSECONDS)).isEqualTo(1000);
+        assertThat(histogram.percentile(50, TimeUnit.MICROSECONDS)).isBetween(500L, 563L);
+        assertThat(histogram.percentile(99, TimeUnit.MICROSECONDS)).isBetween(990L, 1000L);
+        assertThat(histogram.percentile(100, TimeUnit.MICROSECONDS)).isEqualTo(1000);
+    }
+
+    @Test
+    public void bucketsAreContiguous() throws Exception {
+        for (long nanos = 0; nanos < 100000; nanos++) {
+            int bucket = LatencyHistogram.bucket(nanos);
+            assertThat(LatencyHistogram.upperBound(bucket)).isGreaterThanOrEqualTo(nanos);
+            if (bucket > 0) {
+                assertThat(LatencyHistogram.upperBound(bucket - 1)).isLessThan(nanos);
+            }
+        }
+        assertThat(LatencyHistogram.bucket(Long.MAX_VALUE)).isLessThan(64 * 8);
+    }
+
+    @Test
+    public void emptyHistogram() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertThat(histogram.percentile(99, TimeUnit.NANOSECONDS)).isEqualTo(0);
+        assertThat(histogram.max(TimeUnit.NANOSECONDS)).isEqualTo(0);
+    }
+}
@@ -0,0 +1,105 @@
+package com.ncornette.rx.test;
+
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import rx.Observable;
+import rx.functions.Func0;
+import rx.subjects.PublishSubject;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class LeakDetectorTest {
+
+    private LeakDetector leakDetector;
+    private RxTestSchedulers rxTestSchedulers;
+    private Observable<List<Integer>> retainedSpams;
+
+    @Before
+    public void setUp() throws Exception {
+        leakDetector = new LeakDetector();
+        rxTestSchedulers = RxTestSchedulers.builder()
+                .backgroundEventsCount(new Func0<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return 0;
+                    }
+                })
+                .leakDetector(leakDetector)
+                .logger(Logger.error())
+                .build();
+    }
+
+    @Test
+    public void replacedTestSubscriberOfHotObservableLeaks() throws Exception {
+        PublishSubject<Integer> pages = PublishSubject.create();
+        pages.subscribe(rxTestSchedulers.newTestSubscriber());
+        pages.subscribe(rxTestSchedulers.newTestSubscriber());
+
+        assertThat(leakDetector.liveSubscriptions()).contains("replaced test subscriber #2");
+        try {
+            leakDetector.assertNoLeaks();
+            fail("Should throw exception type: " + AssertionError.class.getName());
+        } catch (AssertionError e) {
+            assertThat(e).hasMessageContaining("1 leak(s)").hasMessageContaining("subscription replaced test subscriber #2");
+        }
+
+        pages.onCompleted();
+
+        leakDetector.assertNoLeaks();
+    }
+
+    @Test
+    public void cacheRetainsValuesWhileReachable() throws Exception {
+        subscribeToCache();
+
+        assertThat(leakDetector.cachedValues()).isEqualTo(1);
+        assertThat(leakDetector.cachedBytes()).isEqualTo(16 + 3 * (8 + 16));
+        try {
+            leakDetector.assertNoLeaks();
+            fail("Should throw exception type: " + AssertionError.class.getName());
+        } catch (AssertionError e) {
+            assertThat(e).hasMessageContaining("cache spams: 1 values (~88 bytes)");
+        }
+
+        // Completed subscribers keep their producer, which references the cache: closing releases it.
+        rxTestSchedulers.close();
+
+        assertThat(leakDetector.retainedCaches()).isEmpty();
+    }
+
+    @Test
+    public void closeFailsOnCacheRetainedOutsideTestSubscriber() throws Exception {
+        retainedSpams = Observable.just(Arrays.asList(1, 2, 3))
+                .compose(rxTestSchedulers.<List<Integer>>cache("spams"));
+        retainedSpams.subscribe(rxTestSchedulers.testSubscriber());
+
+        try {
+            rxTestSchedulers.close();
+            fail("Should throw exception type: " + AssertionError.class.getName());
+        } catch (AssertionError e) {
+            assertThat(e).hasMessageContaining("cache spams: 1 values");
+        }
+        assertThat(rxTestSchedulers.testSubscriber().getOnNextEvents()).isEmpty();
+
+        retainedSpams = null;
+        rxTestSchedulers.close();
+    }
+
+    /**
+     * Subscribes twice, so the cache is only reachable from the current test subscriber, not from
+     * a local variable the JIT may keep alive.
+     */
+    private void subscribeToCache() {
+        Observable<List<Integer>> spams = Observable.just(Arrays.asList(1, 2, 3))
+                .compose(rxTestSchedulers.<List<Integer>>cache("spams"));
+        spams.subscribe(rxTestSchedulers.newTestSubscriber());
+        spams.subscribe(rxTestSchedulers.newTestSubscriber());
+    }
+}
@@ -0,0 +1,65 @@
+package com.ncornette.rx.test;
+
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import rx.Observable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LogSubscriberTest {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final Logger logger = new Logger(Logger.Level.INFO, new PrintStream(out, true));
+
+    @Test
+    public void summarizesLargeCollections() throws Exception {
+        LogSubscriber.Format format = LogSubscriber.Format.builder().maxElements(2).build();
+
+        Observable.just(Arrays.asList(1, 2), Arrays.asList(1, 2, 3))
+                .subscribe(LogSubscriber.<List<Integer>>create(logger, null, format));
+
+        assertThat(lines()).containsExactly(
+                "--> onNext: [1, 2]",
+                "--> onNext: ArrayList(size=3)[1, 2, ...]",
+                "--> onCompleted.");
+    }
+
+    @Test
+    public void samplesEvents() throws Exception {
+        LogSubscriber.Format format = LogSubscriber.Format.builder().sampleEvery(2).build();
+
+        Observable.range(1, 5).subscribe(LogSubscriber.<Integer>create(logger, null, format));
+
+        assertThat(lines()).containsExactly(
+                "--> onNext #1: 1",
+                "--> onNext #3: 3",
+                "--> onNext #5: 5",
+                "--> onCompleted.");
+    }
+
+    @Test
+    public void disabledLevelSkipsFormatting() throws Exception {
+        logger.level(Logger.Level.ERROR);
+        Object event = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("formatted");
+            }
+        };
+
+        Observable.just(event).subscribe(LogSubscriber.create(logger, null));
+
+        assertThat(out.toString()).isEmpty();
+    }
+
+    private String[] lines() {
+        return out.toString().split(System.lineSeparator());
+    }
+}
@@ -0,0 +1,194 @@
+package com.ncornette.rx.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+
+import rx.Scheduler;
+import rx.Subscription;
+import rx.functions.Action0;
+import rx.schedulers.Schedulers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MeteredSchedulerTest {
+
+    private static final Action0 NOTHING = new Action0() {
+        @Override
+        public void call() {
+        }
+    };
+
+    private ExecutorService executor;
+    private MeteredScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(2);
+        scheduler = new MeteredScheduler(Schedulers.from(executor), 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.unregister();
+        executor.shutdown();
+    }
+
+    @Test
+    public void countsCompletedAndFailedActions() throws Exception {
+        final CountDownLatch done = new CountDownLatch(10);
+        Scheduler.Worker worker = scheduler.createWorker();
+        for (int i = 0; i < 10; i++) {
+            final int index = i;
+            worker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    done.countDown();
+                    if (index == 9) throw new IllegalStateException("failed action");
+                }
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        worker.unsubscribe();
+        waitUntilIdle();
+
+        assertThat(scheduler.getScheduledActions()).isEqualTo(10);
+        assertThat(scheduler.getCompletedActions()).isEqualTo(9);
+        assertThat(scheduler.getFailedActions()).isEqualTo(1);
+        assertThat(scheduler.getInFlightActions()).isEqualTo(0);
+        assertThat(scheduler.execution().count()).isEqualTo(10);
+    }
+
+    @Test
+    public void measuresQueueWaitBehindBusyWorker() throws Exception {
+        final CountDownLatch done = new CountDownLatch(2);
+        Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                sleep(50);
+                done.countDown();
+            }
+        });
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                done.countDown();
+            }
+        });
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        waitUntilIdle();
+
+        assertThat(scheduler.queueWait().max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(40);
+        assertThat(scheduler.getMaxExecutionMicros()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(50));
+    }
+
+    @Test
+    public void countsCancelledActions() throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Scheduler.Worker worker = scheduler.createWorker();
+        worker.schedule(new Action0() {
+            @Override
+            public void call() {
+                running.countDown();
+                await(release);
+            }
+        });
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        Subscription queued = worker.schedule(NOTHING);
+        worker.schedule(NOTHING);
+        worker.schedule(NOTHING, 1, TimeUnit.HOURS);
+
+        queued.unsubscribe();
+        worker.unsubscribe();
+        worker.schedule(NOTHING);
+        release.countDown();
+        waitUntilIdle();
+
+        assertThat(scheduler.getScheduledActions()).isEqualTo(5);
+        assertThat(scheduler.getCompletedActions()).isEqualTo(1);
+        assertThat(scheduler.getCancelledActions()).isEqualTo(4);
+        assertThat(scheduler.getInFlightActions()).isEqualTo(0);
+    }
+
+    @Test
+    public void samplesActionsInHistograms() throws Exception {
+        scheduler = new MeteredScheduler(Schedulers.from(executor), 0);
+        final CountDownLatch done = new CountDownLatch(10);
+        Scheduler.Worker worker = scheduler.createWorker();
+        for (int i = 0; i < 10; i++) {
+            worker.schedule(new Action0() {
+                @Override
+                public void call() {
+                    done.countDown();
+                }
+            });
+        }
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        waitUntilIdle();
+
+        assertThat(scheduler.getCompletedActions()).isEqualTo(10);
+        assertThat(scheduler.execution().count()).isEqualTo(0);
+        assertThat(scheduler.queueWait().count()).isEqualTo(0);
+    }
+
+    @Test
+    public void exportsAttributesThroughJmx() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        scheduler.createWorker().schedule(new Action0() {
+            @Override
+            public void call() {
+                done.countDown();
+            }
+        });
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        waitUntilIdle();
+
+        ObjectName objectName = scheduler.register("test-io");
+
+        assertThat(objectName.getKeyProperty("type")).isEqualTo("MeteredScheduler");
+        assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "CompletedActions"))
+                .isEqualTo(1L);
+
+        scheduler.unregister();
+
+        assertThat(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)).isFalse();
+    }
+
+    private void waitUntilIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getCompletedActions() + scheduler.getFailedActions() + scheduler.getCancelledActions()
+                < scheduler.getScheduledActions()
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.ncornette.rx.test.service.SpamRXService;
 
 import java.text.MessageFormat;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import rx.Observable;
 import rx.functions.Action0;
@@ -19,26 +20,22 @@ import rx.subjects.PublishSubject;
 public class MockSpamService implements SpamRXService {
 
     public static final int MAX_RESULTS = 120;
+    private final RxTestSchedulers rxTestSchedulers;
     private final TestScheduler backgroundTestScheduler;
-    private final TestScheduler foregroundTestScheduler;
     private final RxTestSchedulers.Logger logger;
-    private int requestCount;
+    private final AtomicInteger requestCount = new AtomicInteger();
 
-    public MockSpamService(TestScheduler backgroundTestScheduler, TestScheduler foregroundTestScheduler) {
-        this(backgroundTestScheduler, foregroundTestScheduler, new RxTestSchedulers.Logger());
-    }
-
-    public MockSpamService(TestScheduler backgroundTestScheduler, TestScheduler foregroundTestScheduler, RxTestSchedulers.Logger logger) {
-        this.backgroundTestScheduler = backgroundTestScheduler;
-        this.foregroundTestScheduler = foregroundTestScheduler;
-        this.logger = logger;
+    public MockSpamService(RxTestSchedulers rxTestSchedulers) {
+        this.rxTestSchedulers = rxTestSchedulers;
+        this.backgroundTestScheduler = rxTestSchedulers.testBackgroundScheduler();
+        this.logger = rxTestSchedulers.logger();
     }
 
     @Override
     public Observable<List<Spam>> searchSpams(String query, final int limit, PublishSubject<Integer> pagePublishSubject) {
         return pagePublishSubject
                 .distinctUntilChanged()
-                .cache()
+                .compose(rxTestSchedulers.<Integer>cache("pages"))
                 .concatMap(new Func1<Integer, Observable<? extends List<Spam>>>() {
                     @Override
                     public Observable<? extends List<Spam>> call(Integer pageNumber) {
@@ -54,15 +51,15 @@ public class MockSpamService implements SpamRXService {
                         return !spams.isEmpty();
                     }
                 })
-                .cache()
-                .observeOn(foregroundTestScheduler);
+                .compose(rxTestSchedulers.<List<Spam>>cache("spams"))
+                .compose(rxTestSchedulers.<List<Spam>>observeOnForeground());
     }
 
     @Override
     public Observable<List<Spam>> latestSpams(int count) {
         Observable<List<Spam>> spams = listOfSpams(count);
         return spams.subscribeOn(backgroundTestScheduler)
-                .observeOn(foregroundTestScheduler);
+                .compose(rxTestSchedulers.<List<Spam>>observeOnForeground());
     }
 
     private Observable<List<Spam>> listOfSpams(final int count) {
@@ -92,13 +89,13 @@ public class MockSpamService implements SpamRXService {
                 .doOnNext(new Action1<List<Spam>>() {
                     @Override
                     public void call(List<Spam> spams) {
-                        requestCount++;
+                        requestCount.incrementAndGet();
                     }
                 });
     }
 
     public int getRequestCount() {
-        return requestCount;
+        return requestCount.get();
     }
 
 }
@@ -4,6 +4,7 @@ import com.ncornette.rx.test.RxTestSchedulers.Logger;
 import com.ncornette.rx.test.service.SpamRXService;
 import com.ncornette.rx.test.service.SpamRXService.Spam;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -37,16 +38,18 @@ public class MockSpamServiceTest extends SpamServiceAssertions {
                     }
                 })
                 .logger(Logger.verbose())
+                .leakDetector(new LeakDetector())
                 .build();
 
-        testServiceClient = new MockSpamService(
-                rxTestSchedulers.testBackgroundScheduler(),
-                rxTestSchedulers.testForegroundScheduler(),
-                rxTestSchedulers.logger()
-        );
+        testServiceClient = new MockSpamService(rxTestSchedulers);
         super.setUp();
     }
 
+    @After
+    public void tearDown() throws Exception {
+        rxTestSchedulers.close();
+    }
+
     @Override
     protected RxTestSchedulers rxTestSchedulers() {
         return rxTestSchedulers;
@@ -99,6 +102,12 @@ public class MockSpamServiceTest extends SpamServiceAssertions {
         super.assertLoad3Pages();
     }
 
+    @Test
+    @Override
+    public void assertLoadPagesUntilIdle() throws Exception {
+        super.assertLoadPagesUntilIdle();
+    }
+
     @Test
     @Override
     public void assertCompletesAtFirstEmptyList() throws Exception {
@@ -0,0 +1,142 @@
+package com.ncornette.rx.test;
+
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import rx.Observable;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OperatorProfilerTest {
+
+    private final OperatorProfiler operatorProfiler = new OperatorProfiler();
+
+    @Rule
+    public final TestRule operatorProfilerRule = operatorProfiler.rule();
+
+    private RxTestSchedulers rxTestSchedulers;
+
+    @Before
+    public void setUp() throws Exception {
+        rxTestSchedulers = RxTestSchedulers.builder()
+                .backgroundEventsCount(new Func0<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return 0;
+                    }
+                })
+                .operatorProfiler(operatorProfiler)
+                .logger(Logger.info())
+                .build();
+    }
+
+    @Test
+    public void countsOnNextOfEachOperator() throws Exception {
+        Observable.range(1, 10)
+                .map(new Func1<Integer, Integer>() {
+                    @Override
+                    public Integer call(Integer i) {
+                        return i * 2;
+                    }
+                })
+                .filter(new Func1<Integer, Boolean>() {
+                    @Override
+                    public Boolean call(Integer i) {
+                        return i % 4 == 0;
+                    }
+                })
+                .observeOn(rxTestSchedulers.testForegroundScheduler())
+                .subscribe(rxTestSchedulers.testSubscriber());
+
+        assertThat(rxTestSchedulers.triggerForegroundEvents()).isEqualTo(5);
+
+        List<OperatorProfiler.Pipeline> pipelines = operatorProfiler.pipelines();
+        assertThat(pipelines).hasSize(1);
+        assertThat(pipelines.get(0).name()).startsWith("OperatorProfilerTest.countsOnNextOfEachOperator(");
+        List<OperatorProfiler.OperatorStats> operators = pipelines.get(0).operators();
+        assertThat(operators).hasSize(3);
+        assertThat(operators.get(0).name()).isEqualTo("OperatorMap");
+        assertThat(operators.get(0).onNextCount()).isEqualTo(10);
+        assertThat(operators.get(1).name()).isEqualTo("OperatorFilter");
+        assertThat(operators.get(1).onNextCount()).isEqualTo(10);
+        assertThat(operators.get(2).name()).isEqualTo("OperatorObserveOn");
+        assertThat(operators.get(2).onNextCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void selfTimeExcludesDownstreamOperators() throws Exception {
+        Observable.just(1)
+                .map(new Func1<Integer, Integer>() {
+                    @Override
+                    public Integer call(Integer i) {
+                        return i;
+                    }
+                })
+                .map(new Func1<Integer, Integer>() {
+                    @Override
+                    public Integer call(Integer i) {
+                        sleep(20);
+                        return i;
+                    }
+                })
+                .subscribe(rxTestSchedulers.testSubscriber());
+
+        List<OperatorProfiler.OperatorStats> operators = operatorProfiler.pipelines().get(0).operators();
+        assertThat(operators.get(0).selfTime(TimeUnit.MILLISECONDS)).isLessThan(10);
+        assertThat(operators.get(1).selfTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+    }
+
+    @Test
+    public void stoppedProfilerIgnoresOperators() throws Exception {
+        operatorProfiler.stop();
+
+        Observable.just(1).map(new Func1<Integer, Integer>() {
+            @Override
+            public Integer call(Integer i) {
+                return i;
+            }
+        }).subscribe(rxTestSchedulers.testSubscriber());
+
+        assertThat(operatorProfiler.pipelines()).isEmpty();
+    }
+
+    @Test
+    public void ruleStopsProfilerAfterTest() throws Throwable {
+        final OperatorProfiler testProfiler = new OperatorProfiler();
+        final Func1<Integer, Integer> identity = new Func1<Integer, Integer>() {
+            @Override
+            public Integer call(Integer i) {
+                return i;
+            }
+        };
+
+        testProfiler.rule().apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                Observable.just(1).map(identity).subscribe();
+            }
+        }, Description.EMPTY).evaluate();
+        Observable.just(2).map(identity).subscribe();
+
+        assertThat(testProfiler.pipelines()).hasSize(1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.ncornette.rx.test;
+
+import com.ncornette.rx.test.RxTestSchedulers.Clock;
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Action0;
+import rx.functions.Func0;
+import rx.functions.Func1;
+import rx.schedulers.TestScheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class RxTestSchedulersTest {
+
+    private RxTestSchedulers rxTestSchedulers;
+    private int executedCount;
+
+    @Before
+    public void setUp() throws Exception {
+        rxTestSchedulers = RxTestSchedulers.builder()
+                .backgroundEventsCount(new Func0<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return executedCount;
+                    }
+                })
+                .logger(Logger.verbose())
+                .build();
+    }
+
+    private Action0 countAction() {
+        return new Action0() {
+            @Override
+            public void call() {
+                executedCount++;
+            }
+        };
+    }
+
+    @Test
+    public void fixedCostClockAdvancesByActionCount() throws Exception {
+        rxTestSchedulers = rxTestSchedulers.newBuilder()
+                .clock(Clock.fixedCost(1, TimeUnit.SECONDS))
+                .build();
+
+        Scheduler.Worker worker = rxTestSchedulers.testBackgroundScheduler().createWorker();
+        worker.schedule(countAction());
+        worker.schedule(countAction());
+        worker.schedule(countAction());
+        worker.schedule(countAction(), 2, TimeUnit.SECONDS);
+
+        assertThat(rxTestSchedulers.triggerBackgroundRequests()).isEqualTo(4);
+        assertThat(rxTestSchedulers.testBackgroundScheduler().now()).isEqualTo(3000);
+        assertThat(rxTestSchedulers.testForegroundScheduler().now()).isEqualTo(0);
+        assertThat(rxTestSchedulers.backgroundWallTime(TimeUnit.SECONDS)).isLessThan(3);
+    }
+
+    @Test
+    public void wallClockIsDefault() throws Exception {
+        assertThat(rxTestSchedulers.clock().isWall()).isTrue();
+
+        rxTestSchedulers.testBackgroundScheduler().createWorker().schedule(countAction(), 1, TimeUnit.HOURS);
+
+        assertThat(rxTestSchedulers.triggerBackgroundRequests()).isEqualTo(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void costClockExpectsMeteredSchedulers() throws Exception {
+        rxTestSchedulers.newBuilder()
+                .backgroundScheduler(new TestScheduler())
+                .clock(Clock.fixedCost(1, TimeUnit.MILLISECONDS))
+                .build();
+    }
+
+    @Test
+    public void plainTestSchedulersTriggerButDontLoop() throws Exception {
+        RxTestSchedulers plainSchedulers = rxTestSchedulers.newBuilder()
+                .foregroundScheduler(new TestScheduler())
+                .build();
+        plainSchedulers.testForegroundScheduler().createWorker().schedule(countAction());
+
+        assertThat(plainSchedulers.trigger(RxTestSchedulers.FOREGROUND, "plain").actions()).isEqualTo(0);
+        assertThat(executedCount).isEqualTo(1);
+        assertThat(plainSchedulers.stage(RxTestSchedulers.FOREGROUND).actionLatency()).isNull();
+        try {
+            plainSchedulers.triggerUntilIdle();
+            fail("Should throw exception type: " + IllegalStateException.class.getName());
+        } catch (IllegalStateException e) {
+            assertThat(e).hasMessageContaining("expect schedulers of type MeteredTestScheduler");
+        }
+    }
+
+    @Test
+    public void fastForwardJumpsToNextDueAction() throws Exception {
+        Observable.interval(1, TimeUnit.HOURS, rxTestSchedulers.testBackgroundScheduler())
+                .take(24)
+                .observeOn(rxTestSchedulers.testForegroundScheduler())
+                .subscribe(rxTestSchedulers.testSubscriber());
+
+        RxTestSchedulers.Steps steps = rxTestSchedulers.fastForward(5, TimeUnit.HOURS);
+
+        assertThat(steps.isIdle()).isFalse();
+        assertThat(steps.events()).isEqualTo(5);
+        assertThat(rxTestSchedulers.testBackgroundScheduler().now()).isEqualTo(TimeUnit.HOURS.toMillis(5));
+
+        steps = rxTestSchedulers.fastForward();
+
+        assertThat(steps.isIdle()).isTrue();
+        assertThat(steps.steps()).hasSize(19);
+        assertThat(steps.events()).isEqualTo(19);
+        assertThat(rxTestSchedulers.testBackgroundScheduler().now()).isEqualTo(TimeUnit.HOURS.toMillis(24));
+        rxTestSchedulers.testSubscriber().assertCompleted();
+    }
+
+    @Test
+    public void chargedTimeAdvancesEveryLoop() throws Exception {
+        rxTestSchedulers = rxTestSchedulers.newBuilder()
+                .clock(Clock.fixedCost(0, TimeUnit.SECONDS))
+                .build();
+        MeteredTestScheduler scheduler = (MeteredTestScheduler) rxTestSchedulers.testBackgroundScheduler();
+
+        scheduler.createWorker().schedule(chargeAction(scheduler, 2));
+        rxTestSchedulers.triggerUntilIdle();
+        assertThat(scheduler.now()).isEqualTo(TimeUnit.SECONDS.toMillis(2));
+
+        scheduler.createWorker().schedule(chargeAction(scheduler, 2), 1, TimeUnit.SECONDS);
+        rxTestSchedulers.fastForward();
+        assertThat(scheduler.now()).isEqualTo(TimeUnit.SECONDS.toMillis(5));
+        assertThat(rxTestSchedulers.testForegroundScheduler().now()).isEqualTo(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Test
+    public void parallelChargesOverlap() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        rxTestSchedulers = rxTestSchedulers.newBuilder()
+                .clock(Clock.fixedCost(0, TimeUnit.SECONDS))
+                .parallelBackground(executor)
+                .build();
+        MeteredTestScheduler scheduler = (MeteredTestScheduler) rxTestSchedulers.testBackgroundScheduler();
+
+        final CyclicBarrier barrier = new CyclicBarrier(4);
+        for (int i = 0; i < 4; i++) {
+            final Action0 charge = chargeAction(scheduler, 1);
+            scheduler.createWorker().schedule(new Action0() {
+                @Override
+                public void call() {
+                    try {
+                        barrier.await(5, TimeUnit.SECONDS);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    charge.call();
+                }
+            });
+        }
+        rxTestSchedulers.triggerBackgroundRequests();
+
+        assertThat(scheduler.now()).isEqualTo(TimeUnit.SECONDS.toMillis(1));
+        assertThat(scheduler.chargedNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(4));
+        executor.shutdown();
+    }
+
+    private static Action0 chargeAction(final MeteredTestScheduler scheduler, final long seconds) {
+        return new Action0() {
+            @Override
+            public void call() {
+                scheduler.charge(seconds, TimeUnit.SECONDS);
+            }
+        };
+    }
+
+    @Test
+    public void namedSchedulersAreTriggeredSeparately() throws Exception {
+        rxTestSchedulers = rxTestSchedulers.newBuilder()
+                .scheduler("Computation", new MeteredTestScheduler())
+                .build();
+
+        Observable.just(1, 2, 3)
+                .subscribeOn(rxTestSchedulers.testBackgroundScheduler())
+                .observeOn(rxTestSchedulers.testScheduler("Computation"))
+                .map(new Func1<Integer, Integer>() {
+                    @Override
+                    public Integer call(Integer i) {
+                        return i * 2;
+                    }
+                })
+                .observeOn(rxTestSchedulers.testForegroundScheduler())
+                .subscribe(rxTestSchedulers.testSubscriber());
+
+        rxTestSchedulers.triggerBackgroundRequests();
+        assertThat(rxTestSchedulers.triggerEvents("Computation")).isGreaterThan(0);
+        assertThat(rxTestSchedulers.triggerForegroundEvents()).isEqualTo(3);
+        assertThat(rxTestSchedulers.stages()).hasSize(3);
+        assertThat(rxTestSchedulers.stage("Computation").triggers()).isEqualTo(1);
+        assertThat(rxTestSchedulers.stage("Computation").actionLatency().count())
+                .isEqualTo(rxTestSchedulers.stage("Computation").executedActions());
+
+        rxTestSchedulers.testSubscriber().assertValues(2, 4, 6);
+        rxTestSchedulers.logSummary();
+    }
+
+    @Test
+    public void parallelBackgroundRunsOnExecutor() throws Exception {
+        final AtomicInteger mapCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        rxTestSchedulers = rxTestSchedulers.newBuilder()
+                .parallelBackground(executor)
+                .backgroundEventsCount(new Func0<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return mapCount.get();
+                    }
+                })
+                .build();
+
+        List<Observable<Integer>> observables = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            observables.add(Observable.just(i)
+                    .map(new Func1<Integer, Integer>() {
+                        @Override
+                        public Integer call(Integer i) {
+                            mapCount.incrementAndGet();
+                            return i;
+                        }
+                    })
+                    .subscribeOn(rxTestSchedulers.testBackgroundScheduler()));
+        }
+        Observable.merge(observables)
+                .observeOn(rxTestSchedulers.testForegroundScheduler())
+                .subscribe(rxTestSchedulers.testSubscriber());
+
+        assertThat(rxTestSchedulers.triggerBackgroundRequests()).isEqualTo(8);
+        assertThat(rxTestSchedulers.triggerForegroundEvents()).isEqualTo(8);
+        assertThat(rxTestSchedulers.stage(RxTestSchedulers.BACKGROUND).utilization()).isNotEmpty();
+        rxTestSchedulers.testSubscriber().assertCompleted();
+        executor.shutdown();
+    }
+
+    @Test
+    public void triggerReportsAllocatedBytes() throws Exception {
+        rxTestSchedulers.testBackgroundScheduler().createWorker().schedule(new Action0() {
+            @Override
+            public void call() {
+                executedCount += new byte[1024 * 1024].length > 0 ? 1 : 0;
+            }
+        });
+
+        RxTestSchedulers.TriggerResult result = rxTestSchedulers.trigger(RxTestSchedulers.BACKGROUND);
+
+        assertThat(result.events()).isEqualTo(1);
+        assertThat(result.actions()).isEqualTo(1);
+        assertThat(result.allocatedBytes()).isGreaterThanOrEqualTo(1024 * 1024);
+        assertThat(rxTestSchedulers.stage(RxTestSchedulers.BACKGROUND).allocatedBytes())
+                .isGreaterThanOrEqualTo(1024 * 1024);
+    }
+
+    @Test
+    public void triggerExceedingBudgetFails() throws Exception {
+        rxTestSchedulers = rxTestSchedulers.newBuilder()
+                .backgroundBudget(Budget.builder().maxEvents(1).maxActions(1).build())
+                .build();
+        Scheduler.Worker worker = rxTestSchedulers.testBackgroundScheduler().createWorker();
+        worker.schedule(countAction());
+
+        assertThat(rxTestSchedulers.triggerBackgroundRequests()).isEqualTo(1);
+
+        worker.schedule(countAction());
+        worker.schedule(countAction());
+        try {
+            rxTestSchedulers.triggerBackgroundRequests();
+            fail("Should throw exception type: " + RxTestSchedulers.BudgetExceededException.class.getName());
+        } catch (RxTestSchedulers.BudgetExceededException e) {
+            assertThat(e.violations()).containsExactly("actions 2 > 1", "events 2 > 1");
+            assertThat(e.result().events()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void countEventsOnlyKeepsRecentEvents() throws Exception {
+        rxTestSchedulers = rxTestSchedulers.newBuilder()
+                .logger(Logger.error())
+                .countEventsOnly(3)
+                .build();
+
+        Observable.range(1, 100000)
+                .observeOn(rxTestSchedulers.testForegroundScheduler())
+                .subscribe(rxTestSchedulers.newTestSubscriber());
+
+        assertThat(rxTestSchedulers.triggerForegroundEvents()).isEqualTo(100000);
+        assertThat(rxTestSchedulers.testSubscriber()).isInstanceOf(CountingTestSubscriber.class);
+        rxTestSchedulers.testSubscriber().assertValueCount(100000);
+        assertThat(rxTestSchedulers.testSubscriber().getOnNextEvents()).containsExactly(99998, 99999, 100000);
+        rxTestSchedulers.testSubscriber().assertCompleted();
+    }
+
+    @Test
+    public void countEventsOnlyAssertsRecentValues() throws Exception {
+        rxTestSchedulers = rxTestSchedulers.newBuilder()
+                .logger(Logger.error())
+                .countEventsOnly(3)
+                .build();
+
+        Observable.range(1, 5)
+                .observeOn(rxTestSchedulers.testForegroundScheduler())
+                .subscribe(rxTestSchedulers.newTestSubscriber());
+        rxTestSchedulers.triggerForegroundEvents();
+
+        CountingTestSubscriber<Object> testSubscriber = (CountingTestSubscriber<Object>) rxTestSchedulers.testSubscriber();
+        testSubscriber.assertRecentValues(3, 4, 5);
+        testSubscriber.assertRecentValues(4, 5);
+        assertThat(testSubscriber.getLastSeenThread()).isSameAs(Thread.currentThread());
+
+        AssertionError windowError = null;
+        try {
+            testSubscriber.assertValues(0, 0, 3, 4, 5);
+        } catch (AssertionError e) {
+            windowError = e;
+        }
+        assertThat(windowError).hasMessageContaining("only the last 3 values are retained");
+
+        AssertionError valueError = null;
+        try {
+            testSubscriber.assertRecentValues(3, 4, 6);
+        } catch (AssertionError e) {
+            valueError = e;
+        }
+        assertThat(valueError).hasMessageContaining("index: 4");
+
+        AssertionError countError = null;
+        try {
+            rxTestSchedulers.testSubscriber().assertValue(5);
+        } catch (AssertionError e) {
+            countError = e;
+        }
+        assertThat(countError).hasMessageContaining("actual: 5");
+    }
+
+    @Test
+    public void observeOnForegroundReportsQueuePeak() throws Exception {
+        rxTestSchedulers = rxTestSchedulers.newBuilder()
+                .logger(Logger.info())
+                .foregroundBudget(Budget.builder().maxQueueDepth(128).build())
+                .build();
+
+        Observable.range(1, 1000)
+                .subscribeOn(rxTestSchedulers.testBackgroundScheduler())
+                .compose(rxTestSchedulers.observeOnForeground())
+                .subscribe(rxTestSchedulers.newTestSubscriber());
+
+        RxTestSchedulers.TriggerResult result = rxTestSchedulers.trigger(RxTestSchedulers.BACKGROUND);
+
+        assertThat(result.queuePeak()).isEqualTo(128);
+        assertThat(rxTestSchedulers.backpressure().queueDepth()).isEqualTo(128);
+        assertThat(rxTestSchedulers.backpressure().requested()).isEqualTo(128);
+
+        result = rxTestSchedulers.trigger(RxTestSchedulers.FOREGROUND);
+
+        assertThat(result.events()).isGreaterThanOrEqualTo(128);
+        assertThat(result.requestCalls()).isGreaterThan(0);
+        assertThat(result.queuePeak()).isLessThanOrEqualTo(128);
+
+        rxTestSchedulers.triggerUntilIdle();
+
+        rxTestSchedulers.testSubscriber().assertValueCount(1000);
+        rxTestSchedulers.testSubscriber().assertCompleted();
+        assertThat(rxTestSchedulers.backpressure().queueDepth()).isEqualTo(0);
+        assertThat(rxTestSchedulers.backpressure().requestCalls()).isGreaterThan(1);
+        rxTestSchedulers.backpressure().assertQueueDepthAtMost(128);
+        rxTestSchedulers.backpressure().assertWithinRequested();
+    }
+
+    @Test
+    public void executedAndUnsubscribedActionsAreNotRetained() throws Exception {
+        MeteredTestScheduler scheduler = (MeteredTestScheduler) rxTestSchedulers.testBackgroundScheduler();
+        Scheduler.Worker worker = scheduler.createWorker();
+        for (int i = 0; i < 100; i++) {
+            worker.schedule(countAction());
+            rxTestSchedulers.triggerBackgroundRequests();
+        }
+        worker.schedule(countAction(), 1, TimeUnit.HOURS).unsubscribe();
+        Scheduler.Worker unsubscribedWorker = scheduler.createWorker();
+        unsubscribedWorker.schedule(countAction(), 1, TimeUnit.HOURS);
+        unsubscribedWorker.unsubscribe();
+
+        assertThat(executedCount).isEqualTo(100);
+        assertThat(scheduler.pendingActions()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,167 @@
+package com.ncornette.rx.test;
+
+import com.ncornette.rx.test.RxTestSchedulers.Logger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import rx.functions.Action0;
+import rx.functions.Func0;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StackSamplerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StackSampler stackSampler;
+    private RxTestSchedulers rxTestSchedulers;
+
+    @Before
+    public void setUp() throws Exception {
+        stackSampler = new StackSampler(1, TimeUnit.MILLISECONDS);
+        rxTestSchedulers = RxTestSchedulers.builder()
+                .backgroundEventsCount(new Func0<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return 0;
+                    }
+                })
+                .stackSampler(stackSampler)
+                .logger(Logger.error())
+                .build();
+    }
+
+    @Test
+    public void samplesBackgroundActions() throws Exception {
+        rxTestSchedulers.testBackgroundScheduler().createWorker().schedule(new Action0() {
+            @Override
+            public void call() {
+                busy(50);
+            }
+        });
+
+        rxTestSchedulers.triggerBackgroundRequests();
+
+        assertThat(stackSampler.samples()).isGreaterThan(0);
+        Map<String, Long> stacks = stackSampler.stacks();
+        String hottest = null;
+        for (Map.Entry<String, Long> entry : stacks.entrySet()) {
+            if (hottest == null || entry.getValue() > stacks.get(hottest)) hottest = entry.getKey();
+        }
+        assertThat(hottest).startsWith(MeteredTestScheduler.class.getName() + ".triggerActions;")
+                .contains(StackSamplerTest.class.getName() + ".busy");
+
+        StringWriter collapsed = new StringWriter();
+        stackSampler.writeCollapsed(collapsed);
+        assertThat(collapsed.toString()).contains(hottest + " " + stacks.get(hottest) + "\n");
+    }
+
+    @Test
+    public void foregroundTriggersAreNotSampled() throws Exception {
+        rxTestSchedulers.testForegroundScheduler().createWorker().schedule(new Action0() {
+            @Override
+            public void call() {
+                busy(20);
+            }
+        });
+
+        rxTestSchedulers.triggerForegroundEvents();
+
+        assertThat(stackSampler.samples()).isEqualTo(0);
+    }
+
+    @Test
+    public void writesCollapsedStacksToFile() throws Exception {
+        rxTestSchedulers.testBackgroundScheduler().createWorker().schedule(new Action0() {
+            @Override
+            public void call() {
+                busy(20);
+            }
+        });
+        rxTestSchedulers.triggerBackgroundRequests();
+        File file = new File(folder.getRoot(), "profiles/test.collapsed");
+
+        stackSampler.writeTo(file);
+
+        assertThat(file).exists();
+        assertThat(file.length()).isGreaterThan(0);
+    }
+
+    @Test
+    public void samplesPoolThreadsOfFirstParallelTrigger() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            rxTestSchedulers = rxTestSchedulers.newBuilder().parallelBackground(executor).build();
+            rxTestSchedulers.testBackgroundScheduler().createWorker().schedule(new Action0() {
+                @Override
+                public void call() {
+                    busy(50);
+                }
+            });
+
+            rxTestSchedulers.triggerBackgroundRequests();
+        } finally {
+            executor.shutdown();
+        }
+
+        boolean sampledPool = false;
+        for (String stack : stackSampler.stacks().keySet()) {
+            sampledPool |= stack.startsWith(ParallelTestScheduler.class.getName() + "$Lane.run;")
+                    && stack.contains(StackSamplerTest.class.getName() + ".busy");
+        }
+        assertThat(sampledPool).isTrue();
+    }
+
+    @Test
+    public void ruleWritesSamplesOfEachTest() throws Throwable {
+        final File directory = new File(folder.getRoot(), "profiles");
+        Description test = Description.createTestDescription(StackSamplerTest.class, "sampledTest");
+
+        stackSampler.rule(directory).apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                rxTestSchedulers.testBackgroundScheduler().createWorker().schedule(new Action0() {
+                    @Override
+                    public void call() {
+                        busy(20);
+                    }
+                });
+                rxTestSchedulers.triggerBackgroundRequests();
+            }
+        }, test).evaluate();
+
+        File file = new File(directory, StackSamplerTest.class.getName() + ".sampledTest.collapsed");
+        assertThat(file).exists();
+        assertThat(file.length()).isGreaterThan(0);
+
+        Description idle = Description.createTestDescription(StackSamplerTest.class, "idleTest");
+        stackSampler.rule(directory).apply(new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+            }
+        }, idle).evaluate();
+
+        assertThat(stackSampler.samples()).isEqualTo(0);
+        assertThat(new File(directory, StackSamplerTest.class.getName() + ".idleTest.collapsed")).doesNotExist();
+    }
+
+    private static void busy(long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+    }
+}
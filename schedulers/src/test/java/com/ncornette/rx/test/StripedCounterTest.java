@@ -0,0 +1,43 @@
+package com.ncornette.rx.test;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StripedCounterTest {
+
+    @Test
+    public void countsConcurrentIncrements() throws Exception {
+        final StripedCounter counter = new StripedCounter(4);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    for (int i = 0; i < 100000; i++) {
+                        counter.increment();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(counter.get()).isEqualTo(800000);
+
+        counter.reset();
+        assertThat(counter.get()).isEqualTo(0);
+    }
+}
@@ -120,6 +120,33 @@ public abstract class SpamServiceAssertions {
         assertThat(rxTestSchedulers.triggerForegroundEvents()).isEqualTo(1);
     }
 
+    @Test
+    public void assertLoadPagesUntilIdle() throws Exception {
+
+        PublishSubject<Integer> pagePublishSubject = PublishSubject.create();
+
+        testServiceClient.searchSpams("eggs", 6, pagePublishSubject).subscribe(rxTestSchedulers.testSubscriber());
+
+        rxTestSchedulers.triggerUntilIdle();
+
+        pagePublishSubject.onNext(1);
+        pagePublishSubject.onNext(2);
+        pagePublishSubject.onNext(3);
+        RxTestSchedulers.Steps steps = rxTestSchedulers.triggerUntilIdle();
+        assertThat(steps.isIdle()).isTrue();
+        assertThat(steps.requests()).isEqualTo(3);
+        assertThat(steps.events()).isEqualTo(3);
+
+        rxTestSchedulers.testSubscriber().assertNotCompleted();
+
+        pagePublishSubject.onNext(4);
+        steps = rxTestSchedulers.triggerUntilIdle();
+        assertThat(steps.requests()).isEqualTo(1);
+        assertThat(steps.events()).isEqualTo(0);
+
+        rxTestSchedulers.testSubscriber().assertCompleted();
+    }
+
     @Test
     public void assertCompletesAtFirstEmptyList() throws Exception {
 